@@ -0,0 +1,185 @@
+package fr.neamar.kiss;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Contact photos, decoded at the size they are displayed.
+ * <p>
+ * Photos are decoded with the largest power of two sample size that keeps them at least as large as the
+ * largest favorite, then scaled down to it. Only the scaled photos are kept in memory, by lookup key and
+ * photo uri, which changes with the photo. Decoded photos that were scaled are kept in a small pool,
+ * and their memory is reused to decode the next photo.
+ */
+public class ContactPhotoCache {
+    private static final String TAG = ContactPhotoCache.class.getSimpleName();
+    /**
+     * Part of the max memory of the app used by photos
+     */
+    private static final int MEMORY_FRACTION = 16;
+    private static final int POOL_SIZE = 2;
+
+    private final LruCache<String, Bitmap> photos;
+    /**
+     * Bitmaps that are not referenced anywhere else and can be decoded into, guarded by itself
+     */
+    private final ArrayDeque<Bitmap> pool = new ArrayDeque<>(POOL_SIZE);
+
+    public ContactPhotoCache() {
+        int maxSize = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        photos = new LruCache<String, Bitmap>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap photo) {
+                return photo.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * @param context   android context
+     * @param lookupKey lookup key of contact
+     * @param photoUri  uri of photo of contact
+     * @return photo at the size of the largest favorite, or smaller if photo is smaller, null if photo can't be read
+     */
+    @Nullable
+    public Bitmap getPhoto(@NonNull Context context, @NonNull String lookupKey, @NonNull Uri photoUri) {
+        String key = lookupKey + '|' + photoUri;
+        Bitmap photo = photos.get(key);
+        if (photo == null) {
+            int size = context.getResources().getDimensionPixelSize(R.dimen.large_favorite_height);
+            photo = decodePhoto(context.getContentResolver(), photoUri, size);
+            if (photo != null) {
+                photos.put(key, photo);
+            }
+        }
+        return photo;
+    }
+
+    /**
+     * Release all photos, and bitmaps that are kept to decode photos
+     */
+    public void clearCache() {
+        photos.evictAll();
+        synchronized (pool) {
+            pool.clear();
+        }
+    }
+
+    @Nullable
+    private Bitmap decodePhoto(@NonNull ContentResolver contentResolver, @NonNull Uri photoUri, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(contentResolver, photoUri, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, size);
+        options.inMutable = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // any bitmap large enough can be reused since KitKat
+            int width = options.outWidth / options.inSampleSize + 1;
+            int height = options.outHeight / options.inSampleSize + 1;
+            options.inBitmap = takeFromPool(width * height * 4);
+        }
+
+        Bitmap decoded;
+        try {
+            decoded = decodeStream(contentResolver, photoUri, options);
+        } catch (IllegalArgumentException e) {
+            // bitmap from pool can't be reused for this photo
+            options.inBitmap = null;
+            decoded = decodeStream(contentResolver, photoUri, options);
+        }
+        if (decoded == null) {
+            return null;
+        }
+
+        Bitmap photo = scale(decoded, size);
+        if (photo != decoded) {
+            addToPool(decoded);
+        }
+        return photo;
+    }
+
+    @Nullable
+    private static Bitmap decodeStream(@NonNull ContentResolver contentResolver, @NonNull Uri photoUri, @NonNull BitmapFactory.Options options) {
+        try (InputStream inputStream = contentResolver.openInputStream(photoUri)) {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } catch (IOException | SecurityException e) {
+            Log.v(TAG, "Unable to load contact photo " + photoUri, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return largest power of two sample size that keeps smaller side of photo at least as large as size
+     */
+    private static int getSampleSize(int width, int height, int size) {
+        int smallerSide = Math.min(width, height);
+        int sampleSize = 1;
+        while (smallerSide / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * @return photo scaled down so that its smaller side is size, photo itself if it is not larger
+     */
+    @NonNull
+    private static Bitmap scale(@NonNull Bitmap photo, int size) {
+        int smallerSide = Math.min(photo.getWidth(), photo.getHeight());
+        if (smallerSide <= size) {
+            return photo;
+        }
+        float scale = (float) size / smallerSide;
+        int width = Math.max(1, Math.round(photo.getWidth() * scale));
+        int height = Math.max(1, Math.round(photo.getHeight() * scale));
+        return Bitmap.createScaledBitmap(photo, width, height, true);
+    }
+
+    @Nullable
+    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
+    private Bitmap takeFromPool(int byteCount) {
+        synchronized (pool) {
+            Iterator<Bitmap> iterator = pool.iterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (bitmap.getAllocationByteCount() >= byteCount) {
+                    iterator.remove();
+                    return bitmap;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addToPool(@NonNull Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT || !bitmap.isMutable()) {
+            return;
+        }
+        synchronized (pool) {
+            if (pool.size() >= POOL_SIZE) {
+                pool.poll();
+            }
+            pool.add(bitmap);
+        }
+    }
+}
@@ -202,7 +202,7 @@ public class CustomIconDialog extends DialogFragment {
             cancelLoadIconsPackTask();
             mLoadIconsPackTask = Utilities.runAsync((task) -> {
                 if (task == mLoadIconsPackTask) {
-                    iconPack.loadDrawables(context.getPackageManager());
+                    iconPack.loadDrawables(context);
                 }
             }, (task) -> {
                 if (!task.isCancelled() && task == mLoadIconsPackTask) {
@@ -480,9 +480,7 @@ public class CustomIconDialog extends DialogFragment {
                 if (loader != null)
                     loader.cancel(true);
                 loader = new AsyncLoad(this);
-                // use AsyncTask.SERIAL_EXECUTOR explicitly for now
-                // TODO: make execution parallel if needed/possible
-                loader.executeOnExecutor(AsyncTask.SERIAL_EXECUTOR, content);
+                loader.executeOnExecutor(Utilities.getIconExecutor(), content);
             }
         }
     }
@@ -10,6 +10,7 @@ import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.pm.ShortcutInfo;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
@@ -19,6 +20,7 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,6 +31,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import fr.neamar.kiss.broadcast.ProfileChangedHandler;
 import fr.neamar.kiss.dataprovider.AppProvider;
@@ -41,6 +47,7 @@ import fr.neamar.kiss.dataprovider.simpleprovider.PhoneProvider;
 import fr.neamar.kiss.dataprovider.simpleprovider.SearchProvider;
 import fr.neamar.kiss.dataprovider.simpleprovider.SettingsProvider;
 import fr.neamar.kiss.dataprovider.simpleprovider.TagsProvider;
+import fr.neamar.kiss.db.AppRecord;
 import fr.neamar.kiss.db.DBHelper;
 import fr.neamar.kiss.db.HistoryMode;
 import fr.neamar.kiss.db.ShortcutRecord;
@@ -48,11 +55,14 @@ import fr.neamar.kiss.db.ValuedHistoryRecord;
 import fr.neamar.kiss.pojo.AppPojo;
 import fr.neamar.kiss.pojo.NameComparator;
 import fr.neamar.kiss.pojo.Pojo;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.pojo.ShortcutPojo;
+import fr.neamar.kiss.result.IconPrefetcher;
 import fr.neamar.kiss.searcher.Searcher;
 import fr.neamar.kiss.utils.PackageManagerUtils;
 import fr.neamar.kiss.utils.ShortcutUtil;
 import fr.neamar.kiss.utils.UserHandle;
+import fr.neamar.kiss.utils.Utilities;
 
 public class DataHandler extends BroadcastReceiver
         implements SharedPreferences.OnSharedPreferenceChangeListener {
@@ -75,7 +85,26 @@ public class DataHandler extends BroadcastReceiver
      */
     public final static String PREF_KEY_EXCLUDED_SHORTCUT_APPS = "excluded-shortcut-apps";
 
+    /**
+     * Number of providers that can be queried at the same time, providers are queried one after the other on single core devices
+     */
+    private static final int PROVIDER_THREAD_COUNT = Math.min(PROVIDER_NAMES.size(), Runtime.getRuntime().availableProcessors());
+    /**
+     * Threads used to query the (expensive) service providers concurrently, see {@link #requestResults(String, Searcher)}
+     */
+    private static final ExecutorService PROVIDER_THREADS = PROVIDER_THREAD_COUNT > 1 ? Executors.newFixedThreadPool(PROVIDER_THREAD_COUNT) : null;
+    /**
+     * Number of top history items whose icons are prefetched, see {@link #prefetchIcons()}
+     */
+    private static final int PREFETCH_HISTORY_COUNT = 50;
+
     private TagsHandler tagsHandler;
+    /**
+     * Custom names and icons of apps by component name, loaded on first use and updated by every change.
+     * Records are never modified, changes replace them.
+     */
+    private Map<String, AppRecord> customAppData = null;
+    private final Object customAppDataLock = new Object();
     final private Context context;
     private String currentQuery;
     private final Map<String, ProviderEntry> providers = new HashMap<>();
@@ -144,6 +173,9 @@ public class DataHandler extends BroadcastReceiver
         ProviderEntry tagsEntry = new ProviderEntry();
         tagsEntry.provider = new TagsProvider();
         this.providers.put("tags", tagsEntry);
+
+        // Load history in background, showing history then doesn't need to access the database
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> DBHelper.loadHistory(this.context));
     }
 
     @Override
@@ -326,6 +358,7 @@ public class DataHandler extends BroadcastReceiver
         Log.v(TAG, "Time to load all providers: " + time + "ms");
 
         this.allProvidersHaveLoaded = true;
+        prefetchIcons();
 
         // Broadcast the fact that the new providers list is ready
         try {
@@ -351,13 +384,53 @@ public class DataHandler extends BroadcastReceiver
      */
     public void requestResults(String query, Searcher searcher) {
         currentQuery = query;
+        List<Future<?>> pendingResults = new ArrayList<>();
         for (ProviderEntry entry : this.providers.values()) {
             if (searcher.isCancelled())
                 break;
             if (entry.provider == null)
                 continue;
-            // Retrieve results for query:
-            entry.provider.requestResults(query, searcher);
+            final IProvider<?> provider = entry.provider;
+            if (PROVIDER_THREADS != null && provider instanceof Provider) {
+                // Service providers go through all their pojos, query them concurrently
+                // so that the slowest one (usually contacts) doesn't delay the others
+                pendingResults.add(PROVIDER_THREADS.submit(() -> provider.requestResults(query, searcher)));
+            } else {
+                // Retrieve results for query:
+                provider.requestResults(query, searcher);
+            }
+        }
+
+        waitForResults(pendingResults);
+    }
+
+    /**
+     * Wait until all providers queried concurrently are done.
+     * <p>
+     * When the search gets cancelled providers stop on their own, waiting for them ensures that
+     * a provider is never used by two searches at the same time.
+     *
+     * @param pendingResults providers still running
+     */
+    private void waitForResults(List<Future<?>> pendingResults) {
+        boolean interrupted = false;
+        for (Future<?> pendingResult : pendingResults) {
+            while (true) {
+                try {
+                    pendingResult.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // search got cancelled, keep waiting for the provider to notice
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Unable to retrieve results from provider", e.getCause());
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -367,7 +440,7 @@ public class DataHandler extends BroadcastReceiver
      * @param searcher the searcher currently running
      */
     public void requestAllRecords(Searcher searcher) {
-        List<Pojo> collectedPojos = new ArrayList<>();
+        List<ScoredPojo> collectedPojos = new ArrayList<>();
         for (ProviderEntry entry : this.providers.values()) {
             if (searcher.isCancelled())
                 break;
@@ -376,7 +449,9 @@ public class DataHandler extends BroadcastReceiver
 
             List<? extends Pojo> pojos = entry.provider.getPojos();
             if (pojos != null) {
-                collectedPojos.addAll(pojos);
+                for (Pojo pojo : pojos) {
+                    collectedPojos.add(new ScoredPojo(pojo, 0));
+                }
             }
         }
         searcher.addResults(collectedPojos);
@@ -391,12 +466,12 @@ public class DataHandler extends BroadcastReceiver
      * @param context            android context
      * @param itemCount          max number of items to retrieve, total number may be less (search or calls are not returned for instance)
      * @param itemsToExcludeById Items to exclude from history by their id
-     * @return pojos in recent history
+     * @return pojos in recent history, most recent ones with highest relevance
      */
-    public List<Pojo> getHistory(Context context, int itemCount, Set<String> itemsToExcludeById) {
+    public List<ScoredPojo> getHistory(Context context, int itemCount, Set<String> itemsToExcludeById) {
         // Pre-allocate array slots that are likely to be used based on the current maximum item
         // count
-        List<Pojo> history = new ArrayList<>(Math.min(itemCount, 256));
+        List<ScoredPojo> history = new ArrayList<>(Math.min(itemCount, 256));
 
         // Max sure that we get enough items, regardless of how many may be excluded
         int extendedItemCount = itemCount + itemsToExcludeById.size();
@@ -420,15 +495,15 @@ public class DataHandler extends BroadcastReceiver
             }
 
             if (historyMode == HistoryMode.ALPHABETICALLY) {
-                pojo.relevance = 0;
+                history.add(new ScoredPojo(pojo, 0));
             } else {
-                pojo.relevance = size - i;
+                history.add(new ScoredPojo(pojo, size - i));
             }
-            history.add(pojo);
         }
 
         if (historyMode == HistoryMode.ALPHABETICALLY) {
-            Collections.sort(history, new NameComparator());
+            NameComparator nameComparator = new NameComparator();
+            Collections.sort(history, (lhs, rhs) -> nameComparator.compare(lhs.pojo, rhs.pojo));
         }
 
         // return only needed items
@@ -436,17 +511,19 @@ public class DataHandler extends BroadcastReceiver
     }
 
     /**
-     * Apply relevance from history to given pojos.
+     * Apply relevance from history to given results.
      *
-     * @param pojos       which needs to have relevance set
+     * @param results     which needs to have relevance set
      * @param historyMode
+     * @return results with relevance from history
      */
-    public void applyRelevanceFromHistory(List<? extends Pojo> pojos, HistoryMode historyMode) {
+    public List<ScoredPojo> applyRelevanceFromHistory(List<ScoredPojo> results, HistoryMode historyMode) {
+        List<ScoredPojo> scoredResults = new ArrayList<>(results.size());
         if (HistoryMode.ALPHABETICALLY == historyMode) {
             // "alphabetically" is special case because relevance needs to be set for all pojos instead of these from history.
             // This is done by setting all relevance to zero which results in order by name from used comparator.
-            for (Pojo pojo : pojos) {
-                pojo.relevance = 0;
+            for (ScoredPojo result : results) {
+                scoredResults.add(new ScoredPojo(result.pojo, 0));
             }
         } else {
             // Get length of history, this is needed so there are no entries missed.
@@ -460,11 +537,12 @@ public class DataHandler extends BroadcastReceiver
                 relevance.put(ids.get(i).record, size - i);
             }
 
-            for (Pojo pojo : pojos) {
-                Integer calculated = relevance.get(pojo.id);
-                pojo.relevance = calculated != null ? calculated : 0;
+            for (ScoredPojo result : results) {
+                Integer calculated = relevance.get(result.pojo.id);
+                scoredResults.add(new ScoredPojo(result.pojo, calculated != null ? calculated : 0));
             }
         }
+        return scoredResults;
     }
 
     /**
@@ -475,6 +553,23 @@ public class DataHandler extends BroadcastReceiver
         return HistoryMode.valueById(prefs.getString("history-mode", "recency"));
     }
 
+    /**
+     * Load icons of favorites and of top history items in background, so that these are displayed without delay.
+     * Does nothing until all providers are loaded.
+     */
+    public void prefetchIcons() {
+        if (!allProvidersHaveLoaded) {
+            return;
+        }
+        IconPrefetcher.prefetchPojos(context, () -> {
+            List<Pojo> pojos = new ArrayList<>(getFavorites());
+            for (ScoredPojo scoredPojo : getHistory(context, PREFETCH_HISTORY_COUNT, Collections.emptySet())) {
+                pojos.add(scoredPojo.pojo);
+            }
+            return pojos;
+        });
+    }
+
     public int getHistoryLength() {
         return DBHelper.getHistoryLength(this.context);
     }
@@ -491,14 +586,19 @@ public class DataHandler extends BroadcastReceiver
     /**
      * Remove shortcut for given {@link ShortcutPojo}
      * This is used for remove of shortcut from gui.
+     * Favorites are updated right away, shortcuts are reloaded once the shortcut is removed from DB.
      *
      * @param shortcut shortcut to be removed
      */
     public void removeShortcut(ShortcutPojo shortcut) {
-        boolean shortcutUpdated = removeShortcut(shortcut.id, shortcut.packageName, shortcut.intentUri);
-        if (shortcutUpdated) {
-            reloadShortcuts();
-        }
+        removeFromFavorites(shortcut.id);
+        final boolean[] shortcutUpdated = {false};
+        Utilities.runAsync(task -> shortcutUpdated[0] = DBHelper.removeShortcut(this.context, shortcut.packageName, shortcut.intentUri),
+                task -> {
+                    if (shortcutUpdated[0]) {
+                        reloadShortcuts();
+                    }
+                }, AsyncTask.SERIAL_EXECUTOR);
     }
 
     /**
@@ -528,7 +628,8 @@ public class DataHandler extends BroadcastReceiver
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
             if (shortcut.isPinned() && shortcut.isOreoShortcut()) {
                 if (ShortcutUtil.unpinShortcut(this.context, shortcut.packageName, shortcut.getOreoId())) {
-                    removeShortcut(shortcut.id, shortcut.packageName, shortcut.intentUri);
+                    removeFromFavorites(shortcut.id);
+                    AsyncTask.SERIAL_EXECUTOR.execute(() -> DBHelper.removeShortcut(this.context, shortcut.packageName, shortcut.intentUri));
                     return true;
                 }
             }
@@ -537,12 +638,13 @@ public class DataHandler extends BroadcastReceiver
     }
 
     /**
-     * Update DB with given {@link ShortcutRecord}.
+     * Update DB with given {@link ShortcutRecord}, waits for the DB.
      *
      * @param shortcutInfo       the shortcut to update.
      * @param includePackageName include package name in shortcut name
      * @return true if update was successful
      */
+    @WorkerThread
     public boolean updateShortcut(ShortcutInfo shortcutInfo, boolean includePackageName) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
             return false;
@@ -573,6 +675,7 @@ public class DataHandler extends BroadcastReceiver
      * @param intentUri   intent to be called, same as {@link ShortcutPojo#intentUri}
      * @return true, if shortcut was removed
      */
+    @WorkerThread
     private boolean removeShortcut(String id, String packageName, String intentUri) {
         Log.d(TAG, "Removing shortcut for " + packageName);
         // Also remove shortcut from favorites
@@ -815,6 +918,19 @@ public class DataHandler extends BroadcastReceiver
         }
     }
 
+    /**
+     * Reload apps of given packages only
+     *
+     * @param packageNames names of changed packages
+     * @param user         user the packages changed for
+     */
+    public void reloadApps(String[] packageNames, UserHandle user) {
+        AppProvider appProvider = getAppProvider();
+        if (appProvider != null) {
+            appProvider.reloadPackages(packageNames, user);
+        }
+    }
+
     @Nullable
     public SearchProvider getSearchProvider() {
         ProviderEntry entry = this.providers.get("search");
@@ -1013,20 +1129,179 @@ public class DataHandler extends BroadcastReceiver
         tagsHandler = new TagsHandler(this.context);
     }
 
+    /**
+     * Get custom names and icons of all apps, shared by app loading and icons.
+     * Read from the database only once.
+     *
+     * @return copy of custom data by component name
+     */
+    @NonNull
+    public Map<String, AppRecord> getCustomAppData() {
+        synchronized (customAppDataLock) {
+            return new HashMap<>(loadCustomAppData());
+        }
+    }
+
+    /**
+     * @param componentName component name of app
+     * @return id of custom icon of app, 0 if app has no custom icon
+     */
+    public long getCustomIconId(String componentName) {
+        synchronized (customAppDataLock) {
+            AppRecord app = loadCustomAppData().get(componentName);
+            return app != null && app.hasCustomIcon() ? app.dbId : 0;
+        }
+    }
+
+    /**
+     * Rename app in the background, changes of custom data of apps are run in order on {@link AsyncTask#SERIAL_EXECUTOR}
+     */
     public void renameApp(String componentName, String newName) {
-        DBHelper.addCustomAppName(context, componentName, newName);
+        AsyncTask.SERIAL_EXECUTOR.execute(() -> writeRenameApp(componentName, newName));
+    }
+
+    @WorkerThread
+    private void writeRenameApp(String componentName, String newName) {
+        Runnable write;
+        synchronized (customAppDataLock) {
+            AppRecord app = loadCustomAppData().get(componentName);
+            if (app == null) {
+                write = null;
+            } else {
+                write = updateCustomApp(app, newName, app.flags | AppRecord.FLAG_CUSTOM_NAME);
+            }
+        }
+        if (write == null) {
+            insertCustomApp(componentName, newName, AppRecord.FLAG_CUSTOM_NAME);
+        } else {
+            write.run();
+        }
     }
 
+    /**
+     * Restore app name in the background, changes of custom data of apps are run in order on {@link AsyncTask#SERIAL_EXECUTOR}
+     */
     public void removeRenameApp(String componentName) {
-        DBHelper.removeCustomAppName(context, componentName);
+        AsyncTask.SERIAL_EXECUTOR.execute(() -> writeRemoveRenameApp(componentName));
     }
 
+    @WorkerThread
+    private void writeRemoveRenameApp(String componentName) {
+        Runnable write = null;
+        synchronized (customAppDataLock) {
+            AppRecord app = loadCustomAppData().get(componentName);
+            if (app != null) {
+                write = removeCustomAppFlag(app, AppRecord.FLAG_CUSTOM_NAME);
+            }
+        }
+        if (write != null) {
+            write.run();
+        }
+    }
+
+    /**
+     * Must be run on {@link AsyncTask#SERIAL_EXECUTOR}, after other changes of custom data of apps
+     *
+     * @return id of custom icon
+     */
+    @WorkerThread
     public long setCustomAppIcon(String componentName) {
-        return DBHelper.addCustomAppIcon(context, componentName);
+        AppRecord app;
+        Runnable write = null;
+        synchronized (customAppDataLock) {
+            app = loadCustomAppData().get(componentName);
+            if (app != null) {
+                write = updateCustomApp(app, app.name, app.flags | AppRecord.FLAG_CUSTOM_ICON);
+            }
+        }
+        if (write == null) {
+            return insertCustomApp(componentName, null, AppRecord.FLAG_CUSTOM_ICON);
+        }
+        write.run();
+        return app.dbId;
     }
 
+    /**
+     * Must be run on {@link AsyncTask#SERIAL_EXECUTOR}, after other changes of custom data of apps
+     *
+     * @return id of removed custom icon, 0 if there was no custom data
+     */
+    @WorkerThread
     public long removeCustomAppIcon(String componentName) {
-        return DBHelper.removeCustomAppIcon(context, componentName);
+        AppRecord app;
+        Runnable write;
+        synchronized (customAppDataLock) {
+            app = loadCustomAppData().get(componentName);
+            if (app == null) {
+                return 0;
+            }
+            write = removeCustomAppFlag(app, AppRecord.FLAG_CUSTOM_ICON);
+        }
+        write.run();
+        return app.dbId;
+    }
+
+    /**
+     * Must be called with customAppDataLock held
+     */
+    @NonNull
+    private Map<String, AppRecord> loadCustomAppData() {
+        if (customAppData == null) {
+            customAppData = DBHelper.getCustomAppData(context);
+        }
+        return customAppData;
+    }
+
+    /**
+     * Must be called without customAppDataLock held, waits for the database to get the id
+     *
+     * @return id of new custom app
+     */
+    @WorkerThread
+    private long insertCustomApp(String componentName, String name, int flags) {
+        AppRecord app = createAppRecord(-1, componentName, name, flags);
+        app.dbId = DBHelper.insertCustomApp(context, app);
+        if (app.dbId != -1) {
+            synchronized (customAppDataLock) {
+                loadCustomAppData().put(componentName, app);
+            }
+        }
+        return app.dbId;
+    }
+
+    /**
+     * Must be called with customAppDataLock held
+     *
+     * @return database write to run after releasing customAppDataLock
+     */
+    private Runnable updateCustomApp(AppRecord app, String name, int flags) {
+        AppRecord updatedApp = createAppRecord(app.dbId, app.componentName, name, flags);
+        customAppData.put(app.componentName, updatedApp);
+        return () -> DBHelper.updateCustomApp(context, updatedApp);
+    }
+
+    /**
+     * Remove flag from custom app, and the whole custom app when nothing is custom about it anymore.
+     * Must be called with customAppDataLock held
+     *
+     * @return database write to run after releasing customAppDataLock
+     */
+    private Runnable removeCustomAppFlag(AppRecord app, int flag) {
+        int flags = app.flags & ~flag;
+        if ((flags & (AppRecord.FLAG_CUSTOM_NAME | AppRecord.FLAG_CUSTOM_ICON)) != 0) {
+            return updateCustomApp(app, app.name, flags);
+        }
+        customAppData.remove(app.componentName);
+        return () -> DBHelper.deleteCustomApp(context, app.dbId);
+    }
+
+    private static AppRecord createAppRecord(long dbId, String componentName, String name, int flags) {
+        AppRecord app = new AppRecord();
+        app.dbId = dbId;
+        app.componentName = componentName;
+        app.name = name;
+        app.flags = flags;
+        return app;
     }
 
     static final class ProviderEntry {
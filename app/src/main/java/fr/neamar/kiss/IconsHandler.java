@@ -12,6 +12,7 @@ import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.preference.PreferenceManager;
 import android.util.Log;
@@ -27,8 +28,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import fr.neamar.kiss.db.AppRecord;
-import fr.neamar.kiss.db.DBHelper;
+import fr.neamar.kiss.icons.IconCache;
 import fr.neamar.kiss.icons.IconPack;
 import fr.neamar.kiss.icons.IconPackXML;
 import fr.neamar.kiss.icons.SystemIconPack;
@@ -60,7 +60,7 @@ public class IconsHandler {
     private IconShape mContactsShape = IconShape.SHAPE_SYSTEM;
     private boolean mForceShape = false;
     private Utilities.AsyncRun mLoadIconsPackTask = null;
-    private volatile Map<String, Long> customIconIds = null;
+    private IconCache iconCache = null;
 
     public IconsHandler(Context ctx) {
         super();
@@ -135,7 +135,7 @@ public class IconsHandler {
             // start async loading
             mLoadIconsPackTask = Utilities.runAsync((task) -> {
                 if (task == mLoadIconsPackTask)
-                    iconPack.load(ctx.getPackageManager());
+                    iconPack.load(ctx);
             }, (task) -> {
                 if (!task.isCancelled() && task == mLoadIconsPackTask) {
                     mLoadIconsPackTask = null;
@@ -156,6 +156,23 @@ public class IconsHandler {
         return getDrawableIconForPackage(componentName, userHandle, true, mIconPack != null);
     }
 
+    /**
+     * Get icon for an app if it is cached in memory, without loading it.
+     *
+     * @param componentName component name
+     * @param userHandle    user handle
+     * @return drawable, null if icon isn't in memory
+     */
+    @Nullable
+    public Drawable getCachedDrawableIconForPackage(ComponentName componentName, UserHandle userHandle) {
+        final String cacheKey = AppPojo.getComponentName(componentName.getPackageName(), componentName.getClassName(), userHandle);
+        Bitmap bitmap = getIconCache().getFromMemory(cacheGetKey(cacheKey));
+        if (bitmap == null) {
+            return null;
+        }
+        return new BitmapDrawable(this.ctx.getResources(), bitmap);
+    }
+
     /**
      * Get or generate icon for an app.
      *
@@ -180,12 +197,8 @@ public class IconsHandler {
 
         // search for custom icon
         if (useCustomIcons) {
-            Map<String, Long> customIconIds = getCustomIconIds();
-            if (customIconIds == null)
-                return null;
-
-            Long customIconId = customIconIds.get(cacheKey);
-            if (customIconId != null) {
+            long customIconId = KissApplication.getApplication(ctx).getDataHandler().getCustomIconId(cacheKey);
+            if (customIconId != 0) {
                 drawable = getCustomIcon(cacheKey, customIconId);
             }
         }
@@ -213,7 +226,7 @@ public class IconsHandler {
 
         drawable = applyBadge(drawable, userHandle);
         if (useCache) {
-            storeDrawable(cacheGetFileName(cacheKey), drawable);
+            cachePutDrawable(cacheKey, drawable);
         }
         return drawable;
     }
@@ -382,11 +395,6 @@ public class IconsHandler {
         return mIconPack != null ? mIconPack : mSystemPack;
     }
 
-    private boolean isDrawableInCache(String key) {
-        File drawableFile = cacheGetFileName(key);
-        return drawableFile.isFile();
-    }
-
     private void storeDrawable(File drawableFile, Drawable drawable) {
         // convert any drawable to bitmap that can be stored
         Bitmap bitmap = DrawableUtils.drawableToBitmap(drawable);
@@ -401,32 +409,46 @@ public class IconsHandler {
     }
 
     private Drawable cacheGetDrawable(String key) {
-
-        if (!isDrawableInCache(key)) {
+        Bitmap bitmap = getIconCache().get(cacheGetKey(key));
+        if (bitmap == null) {
             return null;
         }
+        return new BitmapDrawable(this.ctx.getResources(), bitmap);
+    }
 
-        FileInputStream fis;
-        try {
-            fis = new FileInputStream(cacheGetFileName(key));
-            BitmapDrawable drawable =
-                    new BitmapDrawable(this.ctx.getResources(), BitmapFactory.decodeStream(fis));
-            fis.close();
-            return drawable;
-        } catch (Exception e) {
-            Log.e(TAG, "Unable to get drawable from cache ", e);
+    private void cachePutDrawable(String key, Drawable drawable) {
+        // convert any drawable to bitmap that can be stored
+        Bitmap bitmap = DrawableUtils.drawableToBitmap(drawable);
+        if (bitmap != null) {
+            getIconCache().put(cacheGetKey(key), bitmap);
         }
-
-        return null;
     }
 
     /**
-     * create path for icons cache like this
-     * {cacheDir}/icons/{icons_pack_package_name}_{key_hash}.png
+     * create key for icons cache like this
+     * {icons_pack_package_name}_{key}
      */
-    private File cacheGetFileName(String key) {
+    private String cacheGetKey(String key) {
         String iconsPackPackageName = getIconPack().getPackPackageName();
-        return new File(getIconsCacheDir(), iconsPackPackageName + "_" + key.hashCode() + ".png");
+        return iconsPackPackageName + "_" + key;
+    }
+
+    /**
+     * Icons cache, recently used icons are in memory and all icons are in file {cacheDir}/icons/atlas
+     * at the size of result icons
+     */
+    @NonNull
+    public synchronized IconCache getIconCache() {
+        if (iconCache == null) {
+            File atlasFile = new File(getIconsCacheDir(), "atlas");
+            if (!atlasFile.exists()) {
+                // remove icons cached as png files before the atlas was used
+                cacheClearPngFiles();
+            }
+            int iconSize = ctx.getResources().getDimensionPixelSize(R.dimen.result_icon_size);
+            iconCache = new IconCache(ctx, atlasFile, iconSize);
+        }
+        return iconCache;
     }
 
     private File getIconsCacheDir() {
@@ -452,8 +474,15 @@ public class IconsHandler {
      */
     private void cacheClear() {
         TagDummyResult.resetShape();
-        clearCustomIconIdCache();
+        synchronized (this) {
+            if (iconCache != null) {
+                Log.i(TAG, "Clear " + iconCache);
+                iconCache.clear();
+                iconCache = null;
+            }
+        }
 
+        // also removes icons cached as png files before the atlas was used
         File cacheDir = this.getIconsCacheDir();
 
         File[] fileList = cacheDir.listFiles();
@@ -466,6 +495,17 @@ public class IconsHandler {
         }
     }
 
+    private void cacheClearPngFiles() {
+        File[] fileList = this.getIconsCacheDir().listFiles();
+        if (fileList != null) {
+            for (File item : fileList) {
+                if (item.getName().endsWith(".png") && !item.delete()) {
+                    Log.w(TAG, "Failed to delete file: " + item.getAbsolutePath());
+                }
+            }
+        }
+    }
+
     // Before we fixed the cache path actually returning a folder, a lot of icons got dumped
     // directly in ctx.getCacheDir() so we need to clean it
     private void clearOldCache() {
@@ -511,49 +551,26 @@ public class IconsHandler {
     }
 
     public void changeAppIcon(AppResult appResult, Drawable drawable) {
-        long customIconId = KissApplication.getApplication(ctx).getDataHandler().setCustomAppIcon(appResult.getComponentName());
-        storeDrawable(customIconFileName(appResult.getComponentName(), customIconId), drawable);
-        appResult.setCustomIcon(customIconId, drawable);
-        cacheClear();
+        final long[] customIconId = {0};
+        // in order with other changes of custom data of apps
+        Utilities.runAsync(task -> {
+            customIconId[0] = KissApplication.getApplication(ctx).getDataHandler().setCustomAppIcon(appResult.getComponentName());
+            storeDrawable(customIconFileName(appResult.getComponentName(), customIconId[0]), drawable);
+        }, task -> {
+            appResult.setCustomIcon(customIconId[0], drawable);
+            cacheClear();
+        }, AsyncTask.SERIAL_EXECUTOR);
     }
 
     public void restoreAppIcon(AppResult appResult) {
-        long customIconId = KissApplication.getApplication(ctx).getDataHandler().removeCustomAppIcon(appResult.getComponentName());
-        removeStoredDrawable(customIconFileName(appResult.getComponentName(), customIconId));
-        appResult.clearCustomIcon();
-        cacheClear();
-    }
-
-    /**
-     * clears cache for custom icon ids
-     */
-    private void clearCustomIconIdCache() {
-        synchronized (this) {
-            customIconIds = null;
-        }
-    }
-
-    /**
-     * Thread-safe cache for custom icon ids, maps from component name to custom icon id.
-     * Cache is built only if null.
-     *
-     * @return cache for custom icon ids
-     */
-    private Map<String, Long> getCustomIconIds() {
-        if (customIconIds == null) {
-            synchronized (this) {
-                if (customIconIds == null) {
-                    customIconIds = new HashMap<>();
-                    Map<String, AppRecord> appData = DBHelper.getCustomAppData(ctx);
-                    for (Map.Entry<String, AppRecord> entry : appData.entrySet()) {
-                        if (entry.getValue().hasCustomIcon()) {
-                            customIconIds.put(entry.getKey(), entry.getValue().dbId);
-                        }
-                    }
-                }
-            }
-        }
-        return customIconIds;
+        // in order with other changes of custom data of apps
+        Utilities.runAsync(task -> {
+            long customIconId = KissApplication.getApplication(ctx).getDataHandler().removeCustomAppIcon(appResult.getComponentName());
+            removeStoredDrawable(customIconFileName(appResult.getComponentName(), customIconId));
+        }, task -> {
+            appResult.clearCustomIcon();
+            cacheClear();
+        }, AsyncTask.SERIAL_EXECUTOR);
     }
 
 }
@@ -19,6 +19,7 @@ public class KissApplication extends Application {
     private volatile IconsHandler iconsPackHandler;
     private final IconPackCache mIconPackCache = new IconPackCache();
     private final MimeTypeCache mimeTypeCache = new MimeTypeCache();
+    private final ContactPhotoCache contactPhotoCache = new ContactPhotoCache();
 
     public static KissApplication getApplication(Context context) {
         return (KissApplication) context.getApplicationContext();
@@ -83,6 +84,10 @@ public class KissApplication extends Application {
         return getApplication(ctx).mimeTypeCache;
     }
 
+    public static ContactPhotoCache getContactPhotoCache(Context ctx) {
+        return getApplication(ctx).contactPhotoCache;
+    }
+
     /**
      * Release memory when the UI becomes hidden or when system resources become low.
      *
@@ -97,6 +102,7 @@ public class KissApplication extends Application {
             SQLiteDatabase.releaseMemory();
             mIconPackCache.clearCache(this);
             mimeTypeCache.clearCache();
+            contactPhotoCache.clearCache();
         }
     }
 }
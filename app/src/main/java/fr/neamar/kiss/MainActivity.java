@@ -46,6 +46,7 @@ import java.util.ArrayList;
 import fr.neamar.kiss.adapter.RecordAdapter;
 import fr.neamar.kiss.broadcast.IncomingCallHandler;
 import fr.neamar.kiss.dataprovider.simpleprovider.SearchProvider;
+import fr.neamar.kiss.db.DBHelper;
 import fr.neamar.kiss.forwarder.ForwarderManager;
 import fr.neamar.kiss.pojo.SearchPojo;
 import fr.neamar.kiss.result.Result;
@@ -469,12 +470,16 @@ public class MainActivity extends Activity implements QueryInterface, KeyboardSc
     protected void onPause() {
         super.onPause();
         forwarderManager.onPause();
+        // Most likely an app was just launched, write its history entry without waiting
+        DBHelper.flushHistory(this);
     }
 
     @Override
     protected void onStop() {
         super.onStop();
         forwarderManager.onStop();
+        // Load icons of the home view while in background, so that it is displayed without delay when coming back
+        KissApplication.getApplication(this).getDataHandler().prefetchIcons();
     }
 
     @Override
@@ -805,6 +810,7 @@ public class MainActivity extends Activity implements QueryInterface, KeyboardSc
         forwarderManager.updateSearchRecords(isRefresh, query);
 
         if (query.isEmpty()) {
+            QuerySearcher.clearCandidateCache();
             systemUiVisibilityHelper.resetScroll();
         } else {
             runTask(new QuerySearcher(this, query, isRefresh));
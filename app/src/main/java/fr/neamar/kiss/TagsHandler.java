@@ -14,8 +14,10 @@ import android.provider.AlarmClock;
 import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -24,29 +26,67 @@ import java.util.Set;
 import fr.neamar.kiss.db.DBHelper;
 import fr.neamar.kiss.utils.UserHandle;
 
+/**
+ * Tags of all records, kept in memory.
+ * <p>
+ * Besides the tags of every id, an index of the ids of every tag is maintained on every change,
+ * so that the list of tags and the records with a tag are available without going through all tags.
+ * Thread safe.
+ */
 public class TagsHandler {
     private final Context context;
     // cached tags
     private final Map<String, String> tagsCache;
+    // ids of every tag, same content as tagsCache
+    private final Map<String, Set<String>> idsByTag = new HashMap<>();
 
     TagsHandler(Context context) {
         this.context = context;
         tagsCache = DBHelper.loadTags(this.context);
         addDefaultAliases();
+        for (Map.Entry<String, String> entry : tagsCache.entrySet()) {
+            addToIndex(entry.getKey(), entry.getValue());
+        }
     }
 
     public void setTags(String id, String tags) {
-        // sanitize tags
-        tags = tags.trim().toLowerCase(Locale.getDefault());
-        // remove existing tags for id
-        DBHelper.deleteTagsForId(this.context, id);
-        // add to db
-        DBHelper.insertTagsForId(this.context, tags, id);
-        // add to cache
-        tagsCache.put(id, tags);
+        setTags(Collections.singletonMap(id, tags));
+    }
+
+    /**
+     * Replace tags of several ids at once, written to the database in a single transaction
+     *
+     * @param tagsById tags by id
+     */
+    public void setTags(Map<String, String> tagsById) {
+        Map<String, String> sanitizedTags = sanitize(tagsById);
+        synchronized (this) {
+            for (Map.Entry<String, String> entry : sanitizedTags.entrySet()) {
+                putTags(entry.getKey(), entry.getValue());
+            }
+        }
+        DBHelper.setTagsForIds(this.context, sanitizedTags);
     }
 
-    public String getTags(String id) {
+    /**
+     * Replace all tags, e.g. when importing settings.
+     * Written to the database in a single transaction.
+     *
+     * @param tagsById tags by id, all other ids have no tags afterwards
+     */
+    public void replaceTags(Map<String, String> tagsById) {
+        Map<String, String> sanitizedTags = sanitize(tagsById);
+        synchronized (this) {
+            tagsCache.clear();
+            idsByTag.clear();
+            for (Map.Entry<String, String> entry : sanitizedTags.entrySet()) {
+                putTags(entry.getKey(), entry.getValue());
+            }
+        }
+        DBHelper.replaceTags(this.context, sanitizedTags);
+    }
+
+    public synchronized String getTags(String id) {
         String tag = tagsCache.get(id);
         if (tag == null) {
             return "";
@@ -54,29 +94,79 @@ public class TagsHandler {
         return tag;
     }
 
-    public String[] getAllTagsAsArray() {
-        Set<String> tags = getAllTagsAsSet();
-        return tags.toArray(new String[0]);
+    public synchronized String[] getAllTagsAsArray() {
+        return idsByTag.keySet().toArray(new String[0]);
+    }
+
+    public synchronized Set<String> getAllTagsAsSet() {
+        return new HashSet<>(idsByTag.keySet());
     }
 
-    public Set<String> getAllTagsAsSet() {
-        Set<String> tags = new HashSet<>();
-        for (String value : tagsCache.values()) {
-            tags.addAll(Arrays.asList(value.split("\\s+")));
+    /**
+     * @param tag tag to look for
+     * @return ids of all records with given tag
+     */
+    @NonNull
+    public synchronized Set<String> getIdsWithTag(String tag) {
+        Set<String> ids = idsByTag.get(tag);
+        if (ids == null) {
+            return Collections.emptySet();
         }
-        tags.remove("");
-        return tags;
+        return new HashSet<>(ids);
     }
 
-    public Map<String, String> getTags() {
-        return tagsCache;
+    public synchronized Map<String, String> getTags() {
+        return new HashMap<>(tagsCache);
     }
 
     public void clearTags() {
-        tagsCache.clear();
+        synchronized (this) {
+            tagsCache.clear();
+            idsByTag.clear();
+        }
         DBHelper.deleteTags(this.context);
     }
 
+    @NonNull
+    private static Map<String, String> sanitize(Map<String, String> tagsById) {
+        Map<String, String> sanitizedTags = new LinkedHashMap<>(tagsById.size());
+        for (Map.Entry<String, String> entry : tagsById.entrySet()) {
+            sanitizedTags.put(entry.getKey(), entry.getValue().trim().toLowerCase(Locale.getDefault()));
+        }
+        return sanitizedTags;
+    }
+
+    private void putTags(String id, String tags) {
+        String previousTags = tagsCache.put(id, tags);
+        if (previousTags != null) {
+            removeFromIndex(id, previousTags);
+        }
+        addToIndex(id, tags);
+    }
+
+    private void addToIndex(String id, String tags) {
+        for (String tag : tags.split("\\s+")) {
+            if (tag.isEmpty()) {
+                continue;
+            }
+            Set<String> ids = idsByTag.get(tag);
+            if (ids == null) {
+                ids = new HashSet<>();
+                idsByTag.put(tag, ids);
+            }
+            ids.add(id);
+        }
+    }
+
+    private void removeFromIndex(String id, String tags) {
+        for (String tag : tags.split("\\s+")) {
+            Set<String> ids = idsByTag.get(tag);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                idsByTag.remove(tag);
+            }
+        }
+    }
+
     private void addDefaultAliases() {
         final PackageManager pm = context.getPackageManager();
 
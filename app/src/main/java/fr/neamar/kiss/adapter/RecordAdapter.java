@@ -19,6 +19,7 @@ import java.util.Map;
 import fr.neamar.kiss.normalizer.StringNormalizer;
 import fr.neamar.kiss.result.AppResult;
 import fr.neamar.kiss.result.ContactsResult;
+import fr.neamar.kiss.result.IconPrefetcher;
 import fr.neamar.kiss.result.PhoneResult;
 import fr.neamar.kiss.result.Result;
 import fr.neamar.kiss.result.SearchResult;
@@ -42,6 +43,12 @@ public class RecordAdapter extends BaseAdapter implements SectionIndexer {
     // List of available sections (only used for fast scroll)
     private String[] sections = new String[0];
     private static final String TAG = RecordAdapter.class.getSimpleName();
+    /**
+     * Number of results in a window of icons to prefetch
+     */
+    private static final int PREFETCH_WINDOW_SIZE = 16;
+    // Window of last displayed result, icons of adjacent windows are prefetched when it changes
+    private int prefetchWindow = -1;
 
     public RecordAdapter(QueryInterface parent, List<Result<?>> results) {
         this.parent = parent;
@@ -97,9 +104,27 @@ public class RecordAdapter extends BaseAdapter implements SectionIndexer {
     @Override
     @NonNull
     public View getView(int position, View convertView, @NonNull ViewGroup parent) {
+        prefetchIcons(parent.getContext(), position);
         return results.get(position).display(parent.getContext(), convertView, parent, fuzzyScore);
     }
 
+    /**
+     * Load icons of results in the window of given position and in adjacent windows in background,
+     * so that they are ready when scrolled into view
+     */
+    private void prefetchIcons(Context context, int position) {
+        int window = position / PREFETCH_WINDOW_SIZE;
+        if (window == prefetchWindow) {
+            return;
+        }
+        prefetchWindow = window;
+        int from = Math.max(0, (window - 1) * PREFETCH_WINDOW_SIZE);
+        int to = Math.min(results.size(), (window + 2) * PREFETCH_WINDOW_SIZE);
+        if (from < to) {
+            IconPrefetcher.prefetchResults(context, new ArrayList<>(results.subList(from, to)));
+        }
+    }
+
     public void onLongClick(final int pos, View v) {
         ListPopup menu = results.get(pos).getPopupMenu(v.getContext(), this, v);
 
@@ -134,6 +159,7 @@ public class RecordAdapter extends BaseAdapter implements SectionIndexer {
         StringNormalizer.Result queryNormalized = StringNormalizer.normalizeWithResult(query, false);
 
         fuzzyScore = new FuzzyScore(queryNormalized.codePoints, true);
+        prefetchWindow = -1;
         notifyDataSetChanged();
 
         if (isRefresh) {
@@ -153,6 +179,7 @@ public class RecordAdapter extends BaseAdapter implements SectionIndexer {
 
     public void clear() {
         this.results.clear();
+        prefetchWindow = -1;
         notifyDataSetChanged();
     }
 
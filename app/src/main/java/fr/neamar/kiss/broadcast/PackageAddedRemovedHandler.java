@@ -20,7 +20,7 @@ import fr.neamar.kiss.utils.UserHandle;
  * This class gets called when an application is created or removed on the
  * system
  * <p/>
- * We then recreate our data set.
+ * We then update our data set for the changed packages.
  *
  * @author dorvaryn
  */
@@ -49,8 +49,8 @@ public class PackageAddedRemovedHandler extends BroadcastReceiver {
         if (Intent.ACTION_PACKAGE_REMOVED.equals(action)) {
             if (!replacing) {
                 KissApplication.getApplication(ctx).resetIconsHandler();
-                // Reload application list
-                KissApplication.getApplication(ctx).getDataHandler().reloadApps();
+                // Remove apps of removed packages
+                KissApplication.getApplication(ctx).getDataHandler().reloadApps(packageNames, user);
                 // Remove all installed shortcuts
                 for (String packageName : packageNames) {
                     KissApplication.getApplication(ctx).getDataHandler().removeShortcuts(packageName);
@@ -62,8 +62,8 @@ public class PackageAddedRemovedHandler extends BroadcastReceiver {
 
             boolean isAnyPackageVisible = isAnyPackageVisible(ctx, packageNames, user);
             if (isAnyPackageVisible) {
-                // Reload application list
-                KissApplication.getApplication(ctx).getDataHandler().reloadApps();
+                // Reload apps of changed packages
+                KissApplication.getApplication(ctx).getDataHandler().reloadApps(packageNames, user);
                 // Reload shortcuts
                 KissApplication.getApplication(ctx).getDataHandler().reloadShortcuts();
             }
@@ -8,22 +8,37 @@ import android.content.pm.LauncherApps;
 import android.os.Build;
 import android.os.UserManager;
 import android.preference.PreferenceManager;
+import android.util.Pair;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import fr.neamar.kiss.KissApplication;
 import fr.neamar.kiss.broadcast.PackageAddedRemovedHandler;
+import fr.neamar.kiss.loader.AppPojoSnapshot;
 import fr.neamar.kiss.loader.LoadAppPojos;
+import fr.neamar.kiss.loader.PojoSnapshot;
 import fr.neamar.kiss.normalizer.StringNormalizer;
 import fr.neamar.kiss.pojo.AppPojo;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.searcher.Searcher;
 import fr.neamar.kiss.utils.FuzzyScore;
 import fr.neamar.kiss.utils.UserHandle;
 
 public class AppProvider extends Provider<AppPojo> {
 
+    /**
+     * Packages changed since last completed load, by package and user
+     */
+    private final Map<String, Pair<String, UserHandle>> changedPackages = new HashMap<>();
+    /**
+     * True while a load of all apps is running
+     */
+    private boolean fullLoadRunning = false;
+
     @Override
     public void onCreate() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -109,9 +124,43 @@ public class AppProvider extends Provider<AppPojo> {
     @Override
     public void reload() {
         super.reload();
+        fullLoadRunning = true;
         this.initialize(new LoadAppPojos(this));
     }
 
+    /**
+     * Load apps of given packages again and replace their previous apps, all other apps are kept as is.
+     * Searches already running keep using the previous list of apps.
+     *
+     * @param packageNames names of changed packages
+     * @param user         user the packages changed for
+     */
+    public void reloadPackages(String[] packageNames, UserHandle user) {
+        if (!isLoaded() || fullLoadRunning) {
+            // apps of running load may already be outdated
+            reload();
+            return;
+        }
+
+        for (String packageName : packageNames) {
+            changedPackages.put(user.addUserSuffixToString(packageName, '#'), new Pair<>(packageName, user));
+        }
+        // a running load of changed packages is cancelled, so always load all packages changed since last completed load
+        this.initialize(new LoadAppPojos(this, getPojos(), new ArrayList<>(changedPackages.values())));
+    }
+
+    @Override
+    public void loadOver(List<AppPojo> results) {
+        fullLoadRunning = false;
+        changedPackages.clear();
+        super.loadOver(results);
+    }
+
+    @Override
+    PojoSnapshot<AppPojo> getSnapshot() {
+        return new AppPojoSnapshot();
+    }
+
     /**
      * @param query    The string to search for
      * @param searcher The receiver of results
@@ -129,7 +178,14 @@ public class AppProvider extends Provider<AppPojo> {
 
         FuzzyScore fuzzyScore = new FuzzyScore(queryNormalized.codePoints);
 
-        for (AppPojo pojo : getPojos()) {
+        List<AppPojo> pojos = getPojos();
+        List<AppPojo> candidates = searcher.getCandidates(this, pojos, queryNormalized.codePoints, 0);
+        List<AppPojo> matches = new ArrayList<>();
+
+        for (AppPojo pojo : candidates) {
+            if (searcher.isCancelled()) {
+                return;
+            }
             // exclude apps from results
             if (pojo.isExcluded() && !prefs.getBoolean("enable-excluded-apps", false)) {
                 continue;
@@ -140,28 +196,30 @@ public class AppProvider extends Provider<AppPojo> {
             }
 
             FuzzyScore.MatchInfo matchInfo = fuzzyScore.match(pojo.normalizedName.codePoints);
-            boolean match = pojo.updateMatchingRelevance(matchInfo, false);
+            int relevance = ScoredPojo.getMatchingRelevance(matchInfo, ScoredPojo.NO_MATCH);
 
             // check relevance for tags
             if (pojo.getNormalizedTags() != null) {
                 matchInfo = fuzzyScore.match(pojo.getNormalizedTags().codePoints);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
-            if (match && !searcher.addResult(pojo)) {
-                return;
+            if (relevance != ScoredPojo.NO_MATCH) {
+                matches.add(pojo);
+                if (!searcher.addResult(pojo, relevance)) {
+                    return;
+                }
             }
         }
+
+        searcher.setMatches(this, pojos, queryNormalized.codePoints, 0, matches);
     }
 
     public List<AppPojo> getAllApps() {
         List<AppPojo> pojos = getPojos();
         List<AppPojo> records = new ArrayList<>(pojos.size());
 
-        for (AppPojo pojo : pojos) {
-            pojo.relevance = 0;
-            records.add(pojo);
-        }
+        records.addAll(pojos);
         return records;
     }
 
@@ -172,7 +230,6 @@ public class AppProvider extends Provider<AppPojo> {
         for (AppPojo pojo : pojos) {
             if (pojo.isExcluded()) continue;
 
-            pojo.relevance = 0;
             records.add(pojo);
         }
         return records;
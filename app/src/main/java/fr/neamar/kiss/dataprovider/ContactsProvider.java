@@ -2,25 +2,56 @@ package fr.neamar.kiss.dataprovider;
 
 import android.database.ContentObserver;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.ContactsContract;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
+import fr.neamar.kiss.loader.ContactsPojoSnapshot;
 import fr.neamar.kiss.loader.LoadContactsPojos;
+import fr.neamar.kiss.loader.PojoSnapshot;
 import fr.neamar.kiss.normalizer.PhoneNormalizer;
 import fr.neamar.kiss.normalizer.StringNormalizer;
 import fr.neamar.kiss.pojo.ContactsPojo;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.searcher.Searcher;
 import fr.neamar.kiss.utils.FuzzyScore;
 import fr.neamar.kiss.utils.Permission;
 
 public class ContactsProvider extends Provider<ContactsPojo> {
     protected static final String TAG = ContactsProvider.class.getSimpleName();
+    private static final int SCOPE_NAMES = 0;
+    private static final int SCOPE_IDENTIFIERS = 1;
+    /**
+     * Delay before loading changed contacts, sync adapters usually change many contacts in a row
+     */
+    private static final long RELOAD_DELAY_MS = 1000;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable reloadChangedContacts = this::reloadChangedContacts;
+    /**
+     * Start time of the running load
+     */
+    private long loadStart = 0;
+    /**
+     * Start time of the last completed load, 0 if no load completed yet
+     */
+    private long lastLoadStart = 0;
+    /**
+     * True while a load of all contacts is running, it must not be replaced by a load of changed contacts
+     */
+    private boolean fullLoadRunning = false;
+    /**
+     * True when contacts changed while a load of all contacts was running
+     */
+    private boolean changedDuringFullLoad = false;
     private final ContentObserver cObserver = new ContentObserver(null) {
 
         @Override
@@ -40,16 +71,65 @@ public class ContactsProvider extends Provider<ContactsPojo> {
 
         @Override
         public void onChange(boolean selfChange, @NonNull Collection<Uri> uris, int flags) {
-            //reload contacts
+            //reload changed contacts, once changes are over
             Log.v(TAG, "Contacts changed, reloading provider: " + uris + ", flags: " + flags);
-            reload();
+            handler.removeCallbacks(reloadChangedContacts);
+            handler.postDelayed(reloadChangedContacts, RELOAD_DELAY_MS);
         }
     };
 
     @Override
     public void reload() {
         super.reload();
-        this.initialize(new LoadContactsPojos(this));
+        handler.removeCallbacks(reloadChangedContacts);
+        fullLoadRunning = true;
+        changedDuringFullLoad = false;
+        startLoad(new LoadContactsPojos(this));
+    }
+
+    /**
+     * Only load contacts changed since last load.
+     * Postponed until a running load of all contacts is over.
+     */
+    private void reloadChangedContacts() {
+        if (fullLoadRunning) {
+            changedDuringFullLoad = true;
+            return;
+        }
+        if (lastLoadStart == 0) {
+            reload();
+            return;
+        }
+        Log.v(TAG, "Reloading changed contacts");
+        startLoad(new LoadContactsPojos(this, getPojos(), lastLoadStart));
+    }
+
+    private void startLoad(LoadContactsPojos loader) {
+        loadStart = System.currentTimeMillis();
+        this.initialize(loader);
+    }
+
+    @Override
+    public void loadOver(List<ContactsPojo> results) {
+        lastLoadStart = loadStart;
+        fullLoadRunning = false;
+        super.loadOver(results);
+        if (changedDuringFullLoad) {
+            // contacts changed after the full load started are loaded from its start time
+            changedDuringFullLoad = false;
+            handler.post(reloadChangedContacts);
+        }
+    }
+
+    @Override
+    PojoSnapshot<ContactsPojo> getSnapshot() {
+        PojoSnapshot<ContactsPojo> snapshot = new ContactsPojoSnapshot();
+        if (!Permission.checkPermission(this, Permission.PERMISSION_READ_CONTACTS)) {
+            // Don't keep any contact once permission was revoked
+            snapshot.delete(this);
+            return null;
+        }
+        return snapshot;
     }
 
     @Override
@@ -72,6 +152,7 @@ public class ContactsProvider extends Provider<ContactsPojo> {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        handler.removeCallbacks(reloadChangedContacts);
         //deregister content observer
         getContentResolver().unregisterContentObserver(cObserver);
     }
@@ -86,55 +167,70 @@ public class ContactsProvider extends Provider<ContactsPojo> {
 
         FuzzyScore fuzzyScore = new FuzzyScore(queryNormalized.codePoints);
 
-        for (ContactsPojo pojo : getPojos()) {
+        // phone numbers and IM identifiers are only searched for longer queries,
+        // so results of shorter queries can't be reused once these are searched too
+        boolean searchIdentifiers = queryNormalized.length() > 2;
+        int scope = searchIdentifiers ? SCOPE_IDENTIFIERS : SCOPE_NAMES;
+
+        List<ContactsPojo> pojos = getPojos();
+        List<ContactsPojo> candidates = searcher.getCandidates(this, pojos, queryNormalized.codePoints, scope);
+        List<ContactsPojo> matches = new ArrayList<>();
+
+        for (ContactsPojo pojo : candidates) {
+            if (searcher.isCancelled()) {
+                return;
+            }
             FuzzyScore.MatchInfo matchInfo;
-            boolean match = false;
+            int relevance = ScoredPojo.NO_MATCH;
 
             if (pojo.normalizedName != null) {
                 matchInfo = fuzzyScore.match(pojo.normalizedName.codePoints);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
             // Match also for alternative name, see https://developer.android.com/reference/android/provider/ContactsContract.ContactNameColumns#DISPLAY_NAME_ALTERNATIVE
             // This may result in better match but eventually some missing highlighting
             if (pojo.normalizedNameAlternative != null) {
                 matchInfo = fuzzyScore.match(pojo.normalizedNameAlternative.codePoints);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
             // Match also for phonetic name
             // This may result in better match but eventually some missing highlighting
             if (pojo.normalizedPhoneticName != null) {
                 matchInfo = fuzzyScore.match(pojo.normalizedPhoneticName.codePoints);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
             if (pojo.normalizedNickname != null) {
                 matchInfo = fuzzyScore.match(pojo.normalizedNickname.codePoints);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
-            if (!match && queryNormalized.length() > 2 && pojo.normalizedPhone != null) {
+            if (relevance == ScoredPojo.NO_MATCH && searchIdentifiers && pojo.normalizedPhone != null) {
                 // search for the phone number
                 matchInfo = fuzzyScore.match(pojo.normalizedPhone.codePoints);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
-            if (!match && queryNormalized.length() > 2 && pojo.getContactData() != null && pojo.getContactData().getNormalizedIdentifier() != null) {
+            if (relevance == ScoredPojo.NO_MATCH && searchIdentifiers && pojo.getContactData() != null && pojo.getContactData().getNormalizedIdentifier() != null) {
                 // search for IM identifier
                 matchInfo = fuzzyScore.match(pojo.getContactData().getNormalizedIdentifier().codePoints);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
-            if (match) {
+            if (relevance != ScoredPojo.NO_MATCH) {
                 if (pojo.starred) {
-                    pojo.relevance += 40;
+                    relevance += 40;
                 }
 
-                if (!searcher.addResult(pojo))
+                matches.add(pojo);
+                if (!searcher.addResult(pojo, relevance))
                     return;
             }
         }
+
+        searcher.setMatches(this, pojos, queryNormalized.codePoints, scope, matches);
     }
 
     /**
@@ -48,6 +48,9 @@ public interface IProvider<T extends Pojo> {
 
     /**
      * Try to find a record by its id
+     * <p>
+     * This is called for every favorite and every history item shown, so implementations must not
+     * scan all their pojos: {@link Provider} keeps an index by id that is replaced together with its pojos.
      *
      * @param id id we're looking for
      * @return null if not found
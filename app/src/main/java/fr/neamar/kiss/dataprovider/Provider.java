@@ -4,19 +4,36 @@ import android.app.Service;
 import android.content.Intent;
 import android.os.AsyncTask;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import fr.neamar.kiss.MainActivity;
 import fr.neamar.kiss.loader.LoadPojos;
+import fr.neamar.kiss.loader.PojoSnapshot;
 import fr.neamar.kiss.pojo.Pojo;
 
 public abstract class Provider<T extends Pojo> extends Service implements IProvider<T> {
     private final static String TAG = Provider.class.getSimpleName();
+    /**
+     * Reads and writes all snapshots one after the other, so that a snapshot is never written twice at once
+     */
+    private static final ExecutorService SNAPSHOT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, "PojoSnapshot"));
 
     /**
      * Binder given to clients
@@ -25,8 +42,16 @@ public abstract class Provider<T extends Pojo> extends Service implements IProvi
     /**
      * Storage for search items used by this provider
      */
-    private List<T> pojos = new ArrayList<>();
+    private List<T> pojos = Collections.unmodifiableList(new ArrayList<>());
+    /**
+     * Same pojos as {@link #pojos} by their id, replaced together with the list
+     */
+    private Map<String, T> pojosById = Collections.emptyMap();
+    /**
+     * True once pojos were loaded from the system, restored pojos from the snapshot don't count
+     */
     private boolean loaded = false;
+    private final Handler handler = new Handler(Looper.getMainLooper());
     /**
      * Scheme used to build ids for the pojos created by this provider
      */
@@ -53,6 +78,11 @@ public abstract class Provider<T extends Pojo> extends Service implements IProvi
 
         Log.i(TAG, "Starting provider: " + this.getClass().getSimpleName());
 
+        if (!this.loaded) {
+            // Make last known pojos searchable right away, loader will replace them with current ones
+            restoreSnapshot();
+        }
+
         loader.setProvider(this);
         this.pojoScheme = loader.getPojoScheme();
         this.loader = (LoadPojos<T>) loader.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
@@ -88,13 +118,76 @@ public abstract class Provider<T extends Pojo> extends Service implements IProvi
         // Store results
         this.loader = null;
         this.loaded = true;
-        this.pojos = results;
+        setPojos(results);
+
+        PojoSnapshot<T> snapshot = getSnapshot();
+        if (snapshot != null) {
+            SNAPSHOT_EXECUTOR.execute(() -> snapshot.write(this, results));
+        }
+    }
+
+    /**
+     * Replace pojos, must be called from the UI thread
+     */
+    private void setPojos(List<T> pojos) {
+        this.pojosById = createIndex(pojos);
+        this.pojos = Collections.unmodifiableList(pojos);
 
         // Broadcast this event
         Intent i = new Intent(MainActivity.LOAD_OVER);
         this.sendBroadcast(i);
     }
 
+    /**
+     * @return pojos by id, first pojo wins if several share the same id
+     */
+    private static <T extends Pojo> Map<String, T> createIndex(List<T> pojos) {
+        Map<String, T> index = new HashMap<>(Math.max(16, (int) (pojos.size() / .75f) + 1));
+        for (T pojo : pojos) {
+            if (!index.containsKey(pojo.id)) {
+                index.put(pojo.id, pojo);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Snapshot used to restore pojos at startup, before loader is done.
+     *
+     * @return snapshot of this provider, or null if pojos must always be loaded from the system
+     */
+    @Nullable
+    PojoSnapshot<T> getSnapshot() {
+        return null;
+    }
+
+    /**
+     * Read snapshot in background, and use its pojos unless pojos were loaded from the system meanwhile.
+     * The provider isn't loaded after restoring the snapshot, so that the full load is only over once
+     * pojos were loaded from the system.
+     */
+    private void restoreSnapshot() {
+        PojoSnapshot<T> snapshot = getSnapshot();
+        if (snapshot == null) {
+            return;
+        }
+
+        SNAPSHOT_EXECUTOR.execute(() -> {
+            long startRestore = System.currentTimeMillis();
+            List<T> restored = snapshot.read(this);
+            if (restored == null) {
+                return;
+            }
+            long time = System.currentTimeMillis() - startRestore;
+            Log.i(TAG, "Time to restore " + restored.size() + " pojos of " + this.getClass().getSimpleName() + ": " + time + "ms");
+            handler.post(() -> {
+                if (!this.loaded) {
+                    setPojos(restored);
+                }
+            });
+        });
+    }
+
     /**
      * Tells whether or not this provider may be able to find the pojo with
      * specified id
@@ -114,18 +207,15 @@ public abstract class Provider<T extends Pojo> extends Service implements IProvi
      * @return null if not found
      */
     public T findById(String id) {
-        for (T pojo : pojos) {
-            if (pojo.id.equals(id)) {
-                return pojo;
-            }
-        }
-
-        return null;
+        return pojosById.get(id);
     }
 
+    /**
+     * The same list instance is returned until the provider is reloaded
+     */
     @Override
     public List<T> getPojos() {
-        return Collections.unmodifiableList(pojos);
+        return pojos;
     }
 
     @Override
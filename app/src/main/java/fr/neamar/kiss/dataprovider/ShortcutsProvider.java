@@ -15,7 +15,10 @@ import fr.neamar.kiss.DataHandler;
 import fr.neamar.kiss.KissApplication;
 import fr.neamar.kiss.R;
 import fr.neamar.kiss.loader.LoadShortcutsPojos;
+import fr.neamar.kiss.loader.PojoSnapshot;
+import fr.neamar.kiss.loader.ShortcutPojoSnapshot;
 import fr.neamar.kiss.normalizer.StringNormalizer;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.pojo.ShortcutPojo;
 import fr.neamar.kiss.searcher.Searcher;
 import fr.neamar.kiss.utils.FuzzyScore;
@@ -77,6 +80,11 @@ public class ShortcutsProvider extends Provider<ShortcutPojo> {
         }
     }
 
+    @Override
+    PojoSnapshot<ShortcutPojo> getSnapshot() {
+        return new ShortcutPojoSnapshot();
+    }
+
     @Override
     public void requestResults(String query, Searcher searcher) {
         Set<String> excludedFavoriteIds = KissApplication.getApplication(this).getDataHandler().getExcludedFavorites();
@@ -89,25 +97,37 @@ public class ShortcutsProvider extends Provider<ShortcutPojo> {
 
         FuzzyScore fuzzyScore = new FuzzyScore(queryNormalized.codePoints);
 
-        for (ShortcutPojo pojo : getPojos()) {
+        List<ShortcutPojo> pojos = getPojos();
+        List<ShortcutPojo> candidates = searcher.getCandidates(this, pojos, queryNormalized.codePoints, 0);
+        List<ShortcutPojo> matches = new ArrayList<>();
+
+        for (ShortcutPojo pojo : candidates) {
+            if (searcher.isCancelled()) {
+                return;
+            }
             // exclude favorites from results
             if (excludedFavoriteIds.contains(pojo.getFavoriteId())) {
                 continue;
             }
 
             FuzzyScore.MatchInfo matchInfo = fuzzyScore.match(pojo.normalizedName.codePoints);
-            boolean match = pojo.updateMatchingRelevance(matchInfo, false);
+            int relevance = ScoredPojo.getMatchingRelevance(matchInfo, ScoredPojo.NO_MATCH);
 
             // check relevance for tags
             if (pojo.getNormalizedTags() != null) {
                 matchInfo = fuzzyScore.match(pojo.getNormalizedTags().codePoints);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
-            if (match && !searcher.addResult(pojo)) {
-                return;
+            if (relevance != ScoredPojo.NO_MATCH) {
+                matches.add(pojo);
+                if (!searcher.addResult(pojo, relevance)) {
+                    return;
+                }
             }
         }
+
+        searcher.setMatches(this, pojos, queryNormalized.codePoints, 0, matches);
     }
 
     public List<ShortcutPojo> getPinnedShortcuts() {
@@ -117,7 +137,6 @@ public class ShortcutsProvider extends Provider<ShortcutPojo> {
         for (ShortcutPojo pojo : pojos) {
             if (!pojo.isPinned()) continue;
 
-            pojo.relevance = 0;
             records.add(pojo);
         }
         return records;
@@ -73,8 +73,7 @@ public class CalculatorProvider extends SimpleProvider<SearchPojo> {
             String queryProcessed = operation + readableResult;
             SearchPojo pojo = new SearchPojo("calculator://", queryProcessed, "", SearchPojoType.CALCULATOR_QUERY);
 
-            pojo.relevance = 19;
-            searcher.addResult(pojo);
+            searcher.addResult(pojo, 19);
         }
     }
 }
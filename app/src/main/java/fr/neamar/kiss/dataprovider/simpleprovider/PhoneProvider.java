@@ -24,7 +24,7 @@ public class PhoneProvider extends SimpleProvider<PhonePojo> {
     public void requestResults(String query, Searcher searcher) {
         // Append an item only if query looks like a phone number and device has phone capabilities
         if (deviceIsPhone && PHONE_PATTERN.matcher(query).find()) {
-            searcher.addResult(getResult(query, true));
+            searcher.addResult(getResult(query, true), getRelevance(query));
         }
     }
 
@@ -46,17 +46,23 @@ public class PhoneProvider extends SimpleProvider<PhonePojo> {
         String historyId = PHONE_SCHEME + phoneNumber;
         String id = fromSearch ? PHONE_SCHEME + "search" : historyId;
         PhonePojo pojo = new PhonePojo(id, historyId, phoneNumber);
+        pojo.setName(phoneNumber, false);
+        return pojo;
+    }
 
+    /**
+     * @param phoneNumber phone number used in the result
+     * @return relevance of the result for a search
+     */
+    private int getRelevance(String phoneNumber) {
         String phoneNumberAfterFirstCharacter = phoneNumber.substring(1);
         if (!phoneNumberAfterFirstCharacter.contains("*") && !phoneNumberAfterFirstCharacter.contains("+")) {
             // No * and no + (except maybe as a first character), likely to be a phone number and not a Calculator expression
-            pojo.relevance = 20;
+            return 20;
         } else {
             // Query may be a phone number or a calculator expression, more likely to be an expression
             // Calculator expressions have a relevance of 19, so use something lower
-            pojo.relevance = 15;
+            return 15;
         }
-        pojo.setName(phoneNumber, false);
-        return pojo;
     }
 }
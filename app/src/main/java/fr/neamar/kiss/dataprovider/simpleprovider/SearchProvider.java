@@ -16,7 +16,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import fr.neamar.kiss.R;
-import fr.neamar.kiss.pojo.Pojo;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.pojo.SearchPojo;
 import fr.neamar.kiss.pojo.SearchPojoType;
 import fr.neamar.kiss.searcher.Searcher;
@@ -44,6 +44,7 @@ public class SearchProvider extends SimpleProvider<SearchPojo> {
     }
 
     private final List<SearchPojo> searchProviders = new ArrayList<>();
+    private String defaultSearchEngine;
     private final Context context;
 
     public SearchProvider(Context context) {
@@ -61,7 +62,7 @@ public class SearchProvider extends SimpleProvider<SearchPojo> {
         Set<String> availableProviders = getAvailableSearchProviders(context, prefs);
 
         // Get default search engine
-        String defaultSearchEngine = getDefaultSearchProvider(prefs);
+        defaultSearchEngine = getDefaultSearchProvider(prefs);
 
         assert selectedProviders != null;
         assert availableProviders != null;
@@ -69,12 +70,6 @@ public class SearchProvider extends SimpleProvider<SearchPojo> {
         for (String searchProvider : selectedProviders) {
             String url = getProviderUrl(availableProviders, searchProvider);
             SearchPojo pojo = new SearchPojo("", url, SearchPojoType.SEARCH_QUERY);
-            // Super low relevance, should never be displayed before anything
-            pojo.relevance = -500;
-            if (defaultSearchEngine.equals(searchProvider))
-                // Display default search engine slightly higher
-                pojo.relevance += 1;
-
             pojo.setName(searchProvider, false);
             if (pojo.url != null) {
                 searchProviders.add(pojo);
@@ -87,28 +82,32 @@ public class SearchProvider extends SimpleProvider<SearchPojo> {
         searcher.addResults(getResults(s));
     }
 
-    private List<Pojo> getResults(String query) {
-        List<Pojo> records = new ArrayList<>();
+    private List<ScoredPojo> getResults(String query) {
+        List<ScoredPojo> records = new ArrayList<>();
 
         if (prefs.getBoolean("enable-search", true)) {
-            for (SearchPojo pojo : searchProviders) {
-                pojo.query = query;
-                records.add(pojo);
+            for (SearchPojo searchProvider : searchProviders) {
+                // Search providers are shared by all searches, use a copy holding this query
+                SearchPojo pojo = new SearchPojo(searchProvider.id, query, searchProvider.url, searchProvider.type);
+                pojo.setName(searchProvider.getName(), false);
+                // Super low relevance, should never be displayed before anything
+                // Display default search engine slightly higher
+                int relevance = defaultSearchEngine.equals(pojo.getName()) ? -499 : -500;
+                records.add(new ScoredPojo(pojo, relevance));
             }
         }
 
         if (URLUtils.matchesUrlPattern(query) && URLUtil.isValidUrl(query)) {
             // Open valid URLs directly (if I type http://something.com for instance)
             SearchPojo pojo = createUrlQuerySearchPojo(query);
-            records.add(pojo);
+            records.add(new ScoredPojo(pojo, 50));
         } else if (URIUtils.isValidUri(query, context).isValid) {
             // Open uri directly by an app that can handle it (if i type
             // gemini://oppen.digital/ariane/ for gemini browser)
             // https://github.com/Neamar/KISS/issues/1786
             SearchPojo pojo = new SearchPojo("search://uri-access", query, "", SearchPojoType.URI_QUERY);
-            pojo.relevance = -100;
             pojo.setName(query, false);
-            records.add(pojo);
+            records.add(new ScoredPojo(pojo, -100));
         } else {
             // search for url pattern
             if (URLUtils.matchesUrlPattern(query)) {
@@ -116,7 +115,7 @@ public class SearchProvider extends SimpleProvider<SearchPojo> {
                 String guessedUrl = URLUtil.guessUrl(query);
                 if (URLUtil.isValidUrl(guessedUrl)) {
                     SearchPojo pojo = createUrlQuerySearchPojo(guessedUrl);
-                    records.add(pojo);
+                    records.add(new ScoredPojo(pojo, 50));
                 }
             }
         }
@@ -140,7 +139,6 @@ public class SearchProvider extends SimpleProvider<SearchPojo> {
         url = url.replace("http://", "https://");
 
         SearchPojo pojo = new SearchPojo("search://url-access", "", url, SearchPojoType.URL_QUERY);
-        pojo.relevance = 50;
         pojo.setName(url, false);
         return pojo;
     }
@@ -16,6 +16,7 @@ import java.util.Locale;
 
 import fr.neamar.kiss.R;
 import fr.neamar.kiss.normalizer.StringNormalizer;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.pojo.SettingPojo;
 import fr.neamar.kiss.searcher.Searcher;
 import fr.neamar.kiss.utils.FuzzyScore;
@@ -102,15 +103,15 @@ public class SettingsProvider extends SimpleProvider<SettingPojo> {
 
         for (SettingPojo pojo : pojos) {
             FuzzyScore.MatchInfo matchInfo = fuzzyScore.match(pojo.normalizedName.codePoints);
-            boolean match = pojo.updateMatchingRelevance(matchInfo, false);
+            int relevance = ScoredPojo.getMatchingRelevance(matchInfo, ScoredPojo.NO_MATCH);
 
-            if (!match) {
+            if (relevance == ScoredPojo.NO_MATCH) {
                 // Match localized setting name
                 matchInfo = fuzzyScore.match(settingName);
-                match = pojo.updateMatchingRelevance(matchInfo, match);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
             }
 
-            if (match && !searcher.addResult(pojo)) {
+            if (relevance != ScoredPojo.NO_MATCH && !searcher.addResult(pojo, relevance)) {
                 return;
             }
         }
@@ -1,6 +1,7 @@
 package fr.neamar.kiss.db;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
@@ -8,7 +9,7 @@ import android.util.Log;
 class DB extends SQLiteOpenHelper {
 
     private final static String DB_NAME = "kiss.s3db";
-    private final static int DB_VERSION = 8;
+    private final static int DB_VERSION = 11;
 
     DB(Context context) {
         super(context, DB_NAME, null, DB_VERSION);
@@ -23,6 +24,8 @@ class DB extends SQLiteOpenHelper {
         createTags(database);
         addTimeStamps(database);
         addAppsTable(database);
+        addHistoryIndexes(database);
+        addHistoryRollUps(database);
     }
 
     private void createTags(SQLiteDatabase database) {
@@ -39,6 +42,48 @@ class DB extends SQLiteOpenHelper {
         db.execSQL("CREATE INDEX IF NOT EXISTS index_component ON custom_apps(component_name);");
     }
 
+    /**
+     * History items are removed by record and cleaned up by time stamp.
+     * Rankings and previous results for a query are computed in memory, see {@link HistoryModel}.
+     */
+    private void addHistoryIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_history_record ON history(record, timeStamp);");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_history_timestamp ON history(timeStamp);");
+    }
+
+    /**
+     * Old history items are rolled up by {@link DBHelper} into a single item per record and day,
+     * with the number of uses and the first use of the day. Items that are not rolled up have count 1
+     * and no first use.
+     * Columns are kept on downgrade, as SQLite can't drop them, so they may already exist.
+     */
+    private void addHistoryRollUps(SQLiteDatabase db) {
+        if (!hasColumn(db, "history", "count")) {
+            db.execSQL("ALTER TABLE history ADD COLUMN count INTEGER DEFAULT 1 NOT NULL");
+        }
+        if (!hasColumn(db, "history", "firstTimeStamp")) {
+            db.execSQL("ALTER TABLE history ADD COLUMN firstTimeStamp INTEGER");
+        }
+    }
+
+    private boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null)) {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(nameIndex))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void dropHistoryIndexes(SQLiteDatabase db) {
+        db.execSQL("DROP INDEX IF EXISTS idx_history_query");
+        db.execSQL("DROP INDEX IF EXISTS idx_history_record");
+        db.execSQL("DROP INDEX IF EXISTS idx_history_timestamp");
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
         Log.w("onUpgrade", "Updating database from version " + oldVersion + " to version " + newVersion);
@@ -62,6 +107,16 @@ class DB extends SQLiteOpenHelper {
                 case 7:
                     addAppsTable(database);
                     // fall through
+                case 8:
+                    addHistoryIndexes(database);
+                    // fall through
+                case 9:
+                    // previous results for a query are not read from database anymore
+                    database.execSQL("DROP INDEX IF EXISTS idx_history_query");
+                    // fall through
+                case 10:
+                    addHistoryRollUps(database);
+                    // fall through
                 default:
                     break;
             }
@@ -73,6 +128,9 @@ class DB extends SQLiteOpenHelper {
         Log.w("onDowngrade", "Updating database from version " + oldVersion + " to version " + newVersion);
 
         if (newVersion < oldVersion) {
+            if (newVersion < 9) {
+                dropHistoryIndexes(database);
+            }
             switch (newVersion) {
                 case 7:
                 case 6:
@@ -3,17 +3,25 @@ package fr.neamar.kiss.db;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
-import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import fr.neamar.kiss.DataHandler;
 import fr.neamar.kiss.KissApplication;
@@ -21,148 +29,405 @@ import fr.neamar.kiss.KissApplication;
 public class DBHelper {
     private static final String TAG = DBHelper.class.getSimpleName();
     private static SQLiteDatabase database = null;
+    /**
+     * In-memory copy of the history table, loaded on first use and kept up to date by every change of the history.
+     * Loaded on the write handler, published with pendingHistory held.
+     */
+    private static volatile HistoryModel historyModel = null;
+    /**
+     * Delay before history items are written, so that several launches are written in a single transaction
+     */
+    private static final long HISTORY_WRITE_DELAY_MS = 5000;
+    /**
+     * Delay without any history written before history is cleaned up
+     */
+    private static final long HISTORY_MAINTENANCE_DELAY_MS = 60000;
+    /**
+     * Age of history items rolled up into one item per record and day
+     */
+    private static final long HISTORY_ROLL_UP_AGE_MS = 2592000000L; // 1000 * 60 * 60 * 24 * 30
+    /**
+     * History items not written to the database yet
+     */
+    private static final List<PendingHistoryItem> pendingHistory = new ArrayList<>();
+    /**
+     * Handler of the thread writing history to the database
+     */
+    private static Handler writeHandler = null;
+    private static final int MSG_MAINTAIN_HISTORY = 1;
+    /**
+     * Max number of history items deleted or merged by a batch of the maintenance
+     */
+    private static final int MAINTENANCE_BATCH_SIZE = 200;
+    /**
+     * Max number of free pages released by a batch of the maintenance
+     */
+    private static final int VACUUM_BATCH_PAGES = 128;
+    /**
+     * Value of PRAGMA auto_vacuum for incremental vacuum
+     */
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+    /**
+     * Running maintenance of the history, only accessed from the write handler
+     */
+    private static HistoryMaintenance historyMaintenance = null;
+    /**
+     * Compiled statements of frequent writes by SQL, only accessed from the write handler
+     */
+    private static final Map<String, SQLiteStatement> statements = new HashMap<>();
 
     private DBHelper() {
     }
 
-    private static SQLiteDatabase getDatabase(Context context) {
+    private static synchronized SQLiteDatabase getDatabase(Context context) {
         if (database == null) {
-            database = new DB(context).getReadableDatabase();
+            database = new DB(context).getWritableDatabase();
+            // Reads don't wait for writes (and the other way around) when using write-ahead logging
+            database.enableWriteAheadLogging();
         }
         return database;
     }
 
-    private static List<ValuedHistoryRecord> readCursor(Cursor cursor) {
-        cursor.moveToFirst();
+    /**
+     * Get compiled statement for given SQL, compiled only once.
+     * Must be called from the write handler, bindings are cleared.
+     */
+    private static SQLiteStatement getStatement(SQLiteDatabase db, String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearBindings();
+        }
+        return statement;
+    }
 
-        List<ValuedHistoryRecord> records = new ArrayList<>(cursor.getCount());
-        while (!cursor.isAfterLast()) {
-            ValuedHistoryRecord entry = new ValuedHistoryRecord();
+    /**
+     * Run write on the thread writing to the database, without waiting for it.
+     * All writes are serialized on that thread, reads can run concurrently on any other thread.
+     * Callers keep their in-memory state up to date themselves.
+     */
+    private static void runWrite(Runnable write) {
+        getWriteHandler().post(() -> {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Unable to write to database", e);
+            }
+        });
+    }
 
-            entry.record = cursor.getString(0);
-            entry.value = cursor.getInt(1);
+    /**
+     * Wait until all writes posted before are done.
+     * Must not be called from the UI thread.
+     */
+    @WorkerThread
+    private static void awaitWrites() {
+        callWrite(() -> null);
+    }
 
-            records.add(entry);
-            cursor.moveToNext();
+    /**
+     * Run write on the thread writing to the database and wait for its result.
+     * Only for writes whose result is needed, all other writes use {@link #runWrite(Runnable)}.
+     * All writes are serialized on that thread, reads can run concurrently on any other thread.
+     * Must not be called from the UI thread.
+     */
+    @WorkerThread
+    private static <T> T callWrite(Callable<T> write) {
+        Handler handler = getWriteHandler();
+        FutureTask<T> task = new FutureTask<>(write);
+        if (Looper.myLooper() == handler.getLooper()) {
+            task.run();
+        } else {
+            handler.post(task);
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing to database", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
         }
-        cursor.close();
-
-        return records;
     }
 
     /**
-     * Insert new item into history
+     * Insert new item into history.
+     * The in-memory history is updated right away if it is loaded, the database is written later on a background thread.
+     * Items inserted while the history is loading are added once it is loaded.
      *
      * @param context android context
      * @param query   query to insert
      * @param record  record to insert
      */
     public static void insertHistory(Context context, String query, String record) {
-        SQLiteDatabase db = getDatabase(context);
-        ContentValues values = new ContentValues();
-        values.put("query", query);
-        values.put("record", record);
-        values.put("timeStamp", System.currentTimeMillis());
-        db.insert("history", null, values);
-
-        if (Math.random() <= 0.005) {
-            // Roughly every 200 inserts, clean up the history of items older than 3 months
-            long twoMonthsAgo = 7776000000L; // 1000 * 60 * 60 * 24 * 30 * 3;
-            db.delete("history", "timeStamp < ?", new String[]{Long.toString(System.currentTimeMillis() - twoMonthsAgo)});
-            // And vacuum the DB for speed
-            db.execSQL("VACUUM");
+        long timeStamp = System.currentTimeMillis();
+        HistoryModel model;
+        boolean scheduleWrite;
+        synchronized (pendingHistory) {
+            model = historyModel;
+            scheduleWrite = pendingHistory.isEmpty();
+            pendingHistory.add(new PendingHistoryItem(query, record, timeStamp));
         }
+        if (model != null) {
+            model.add(query, record, timeStamp);
+        }
+        if (scheduleWrite) {
+            Context appContext = context.getApplicationContext();
+            getWriteHandler().postDelayed(() -> writePendingHistory(appContext), HISTORY_WRITE_DELAY_MS);
+        }
+    }
+
+    /**
+     * Write pending history items now (still on a background thread), e.g. when KISS goes to background.
+     *
+     * @param context android context
+     */
+    public static void flushHistory(Context context) {
+        Context appContext = context.getApplicationContext();
+        getWriteHandler().post(() -> writePendingHistory(appContext));
     }
 
     public static void removeFromHistory(Context context, String record) {
-        SQLiteDatabase db = getDatabase(context);
-        db.delete("history", "record = ?", new String[]{record});
+        getHistoryModel(context).remove(record);
+        Context appContext = context.getApplicationContext();
+        getWriteHandler().post(() -> {
+            writePendingHistory(appContext);
+            getDatabase(appContext).delete("history", "record = ?", new String[]{record});
+        });
     }
 
     public static void clearHistory(Context context) {
-        SQLiteDatabase db = getDatabase(context);
-        db.delete("history", "", null);
+        getHistoryModel(context).clear();
+        Context appContext = context.getApplicationContext();
+        getWriteHandler().post(() -> {
+            writePendingHistory(appContext);
+            getDatabase(appContext).delete("history", "", null);
+        });
     }
 
-    private static Cursor getHistoryByFrecency(SQLiteDatabase db, int limit) {
-        // Since smart history sql uses a group by we don't use the whole history but a limit of recent apps
-        int historyWindowSize = limit * 30;
+    private static synchronized Handler getWriteHandler() {
+        if (writeHandler == null) {
+            HandlerThread thread = new HandlerThread("DBHelper", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            writeHandler = new Handler(thread.getLooper(), msg -> {
+                if (msg.what == MSG_MAINTAIN_HISTORY) {
+                    startHistoryMaintenance((Context) msg.obj);
+                    return true;
+                }
+                return false;
+            });
+        }
+        return writeHandler;
+    }
 
-        // order history based on frequency * recency
-        // frequency = #launches_for_app / #all_launches
-        // recency = 1 / position_of_app_in_normal_history
-        String sql = "SELECT record, count(*) FROM " +
-                " (" +
-                "   SELECT * FROM history ORDER BY _id DESC " +
-                "   LIMIT " + historyWindowSize + "" +
-                " ) small_history " +
-                " GROUP BY record " +
-                " ORDER BY " +
-                "   count(*) * 1.0 / (select count(*) from history LIMIT " + historyWindowSize + ") / ((SELECT _id FROM history ORDER BY _id DESC LIMIT 1) - max(_id) + 0.001) " +
-                " DESC " +
-                " LIMIT " + limit;
-        return db.rawQuery(sql, null);
+    /**
+     * Insert all pending history items in a single transaction.
+     * Must be called from the write handler.
+     */
+    private static void writePendingHistory(Context context) {
+        List<PendingHistoryItem> items;
+        synchronized (pendingHistory) {
+            if (pendingHistory.isEmpty()) {
+                return;
+            }
+            items = new ArrayList<>(pendingHistory);
+            pendingHistory.clear();
+        }
+
+        SQLiteDatabase db = getDatabase(context);
+        boolean maintenanceNeeded = false;
+        db.beginTransaction();
+        try {
+            for (PendingHistoryItem item : items) {
+                SQLiteStatement statement = getStatement(db, "INSERT INTO history(\"query\", record, timeStamp) VALUES (?,?,?)");
+                if (item.query != null) {
+                    statement.bindString(1, item.query);
+                }
+                statement.bindString(2, item.record);
+                statement.bindLong(3, item.timeStamp);
+                statement.executeInsert();
+                // Roughly every 200 inserts, clean up the history
+                maintenanceNeeded |= Math.random() <= 0.005;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Wait until history isn't written anymore for a while
+        Handler handler = getWriteHandler();
+        if (maintenanceNeeded || handler.hasMessages(MSG_MAINTAIN_HISTORY)) {
+            handler.removeMessages(MSG_MAINTAIN_HISTORY);
+            handler.sendMessageDelayed(handler.obtainMessage(MSG_MAINTAIN_HISTORY, context), HISTORY_MAINTENANCE_DELAY_MS);
+        }
     }
 
-    private static Cursor getHistoryByFrequency(SQLiteDatabase db, int limit) {
-        // order history based on frequency
-        String sql = "SELECT record, count(*) FROM history" +
-                " GROUP BY record " +
-                " ORDER BY count(*) DESC " +
-                " LIMIT " + limit;
-        return db.rawQuery(sql, null);
+    /**
+     * Start to clean up the history of items older than 3 months, and roll up items older than a month.
+     * The in-memory history is cleaned up right away, the database is changed in small batches.
+     * Must be called from the write handler.
+     */
+    private static void startHistoryMaintenance(Context context) {
+        if (historyMaintenance != null) {
+            // still running
+            return;
+        }
+        long threeMonthsAgo = 7776000000L; // 1000 * 60 * 60 * 24 * 30 * 3;
+        long now = System.currentTimeMillis();
+        getHistoryModel(context).removeOlderThan(now - threeMonthsAgo);
+        historyMaintenance = new HistoryMaintenance(now - threeMonthsAgo, now - HISTORY_ROLL_UP_AGE_MS);
+        scheduleHistoryMaintenanceBatch(context);
     }
 
-    private static Cursor getHistoryByRecency(SQLiteDatabase db, int limit) {
-        return db.query(true, "history", new String[]{"record", "1"}, null, null,
-                null, null, "_id DESC", Integer.toString(limit));
+    /**
+     * Run the next batch of the maintenance once the write handler has nothing else to do,
+     * so that writes never wait for more than a single batch.
+     * Must be called from the write handler.
+     */
+    private static void scheduleHistoryMaintenanceBatch(Context context) {
+        Looper.myQueue().addIdleHandler(() -> {
+            getWriteHandler().post(() -> runHistoryMaintenanceBatch(context));
+            return false;
+        });
+    }
+
+    private static void runHistoryMaintenanceBatch(Context context) {
+        HistoryMaintenance maintenance = historyMaintenance;
+        long start = System.currentTimeMillis();
+        boolean done;
+        try {
+            done = maintenance.runBatch(getDatabase(context));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unable to clean up history", e);
+            done = true;
+        }
+        maintenance.time += System.currentTimeMillis() - start;
+        if (done) {
+            historyMaintenance = null;
+            Log.i(TAG, maintenance.time + " milliseconds to clean up history in " + maintenance.batchCount + " batches");
+        } else {
+            scheduleHistoryMaintenanceBatch(context);
+        }
     }
 
     /**
-     * Get the most used history items adaptively based on a set period of time
+     * Delete a batch of history items used before given time.
+     * Must be called from the write handler.
      *
-     * @param db    The SQL db
-     * @param hours How many hours back we want to test frequency against
-     * @param limit Maximum result size
-     * @return Cursor
-     */
-    private static Cursor getHistoryByAdaptive(SQLiteDatabase db, int hours, int limit) {
-        // order history based on frequency
-        String sql = "SELECT record, count(*) FROM history " +
-                "WHERE timeStamp >= 0 " +
-                "AND timeStamp >" + (System.currentTimeMillis() - (hours * 3600000L)) +
-                " GROUP BY record " +
-                " ORDER BY count(*) DESC " +
-                " LIMIT " + limit;
-        return db.rawQuery(sql, null);
-    }
-
-    /**
-     * Get the history items used closest to this time of day, for each day old an item is it has
-     * one less hour of time weight. So we limit the number of days of history to 24 days in the
-     * WHERE clause, this should also help with speed on large histories.
+     * @return number of items deleted
+     */
+    private static int deleteHistoryBatch(SQLiteDatabase db, long minTimeStamp) {
+        SQLiteStatement delete = getStatement(db, "DELETE FROM history WHERE _id IN (SELECT _id FROM history WHERE timeStamp < ? LIMIT ?)");
+        delete.bindLong(1, minTimeStamp);
+        delete.bindLong(2, MAINTENANCE_BATCH_SIZE);
+        return delete.executeUpdateDelete();
+    }
+
+    /**
+     * Find history items of a record used before given time on the same (local) day, to be merged into
+     * a single item keeping the number of uses, first and last use, and the query used most often.
+     * The merged item keeps the _id of the last use, so the order of items doesn't change.
      * <p>
-     * This is done by taking the max of a triangle waveform whose period is 24 hours, amplitude
-     * is half the milliseconds in a day and begins at currentTimeMillis() - timestamp, then offset
-     * by the time difference / 48 to diminish older history items by an hour for every day old. 48
-     * is used because the triangle wave is half amplitude (1 / 2) * (1 / 24) = 1 / 48.
+     * The in-memory history isn't changed, rankings computed from rolled up items are the same
+     * except for the time of day of uses between first and last use, which is spread evenly.
      *
-     * @param db    The SQL db
-     * @param limit Maximum result size
-     * @return Cursor
+     * @param db           database
+     * @param maxTimeStamp items used before this time are rolled up
+     * @return roll ups with items to merge
      */
-    private static Cursor getHistoryByTime(SQLiteDatabase db, int limit) {
-        final long now = System.currentTimeMillis();
-        final long MS_24_DAYS_AGO = now - 2073600000L;
-        String sql = "SELECT record, MAX(ABS((" + now + " - timestamp) % 86400000 - 43200000) - (" + now + " - timestamp) / 48 ) AS value" +
-                " FROM history" +
-                " WHERE timestamp > " + MS_24_DAYS_AGO +
-                " GROUP BY record " +
-                " ORDER BY value DESC " +
-                " LIMIT " + limit;
-        return db.rawQuery(sql, null);
+    private static List<HistoryRollUp> readHistoryRollUps(SQLiteDatabase db, long maxTimeStamp) {
+        List<HistoryRollUp> rollUps = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT _id, \"query\", record, timeStamp, count, firstTimeStamp," +
+                        " date(timeStamp / 1000, 'unixepoch', 'localtime') AS day" +
+                        " FROM history WHERE timeStamp < ? ORDER BY record, day, _id",
+                new String[]{Long.toString(maxTimeStamp)})) {
+            HistoryRollUp rollUp = null;
+            while (cursor.moveToNext()) {
+                String record = cursor.getString(2);
+                String day = cursor.getString(6);
+                if (rollUp == null || !rollUp.record.equals(record) || !rollUp.day.equals(day)) {
+                    rollUp = new HistoryRollUp(record, day);
+                    rollUps.add(rollUp);
+                }
+                long timeStamp = cursor.getLong(3);
+                long firstTimeStamp = cursor.isNull(5) ? timeStamp : cursor.getLong(5);
+                rollUp.add(cursor.getLong(0), cursor.getString(1), cursor.getInt(4), firstTimeStamp, timeStamp);
+            }
+        }
+        // only keep roll ups merging items
+        List<HistoryRollUp> merging = new ArrayList<>(rollUps.size());
+        for (HistoryRollUp rollUp : rollUps) {
+            if (!rollUp.mergedIds.isEmpty()) {
+                merging.add(rollUp);
+            }
+        }
+        return merging;
     }
 
+    /**
+     * Merge items of given roll ups in a single transaction.
+     * Items removed from the history meanwhile are ignored.
+     * Must be called from the write handler.
+     *
+     * @return number of items merged
+     */
+    private static int writeHistoryRollUps(SQLiteDatabase db, List<HistoryRollUp> rollUps) {
+        int merged = 0;
+        db.beginTransaction();
+        try {
+            for (HistoryRollUp rollUp : rollUps) {
+                SQLiteStatement update = getStatement(db, "UPDATE history SET \"query\" = ?, count = ?, firstTimeStamp = ?, timeStamp = ? WHERE _id = ?");
+                if (rollUp.query != null) {
+                    update.bindString(1, rollUp.query);
+                }
+                update.bindLong(2, rollUp.count);
+                update.bindLong(3, rollUp.firstTimeStamp);
+                update.bindLong(4, rollUp.lastTimeStamp);
+                update.bindLong(5, rollUp.id);
+                update.executeUpdateDelete();
+                for (long id : rollUp.mergedIds) {
+                    SQLiteStatement delete = getStatement(db, "DELETE FROM history WHERE _id = ?");
+                    delete.bindLong(1, id);
+                    delete.executeUpdateDelete();
+                }
+                merged += rollUp.mergedIds.size();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return merged;
+    }
+
+    /**
+     * Release a batch of free pages of the database file.
+     * Free pages are only released incrementally once the database uses incremental auto vacuum,
+     * switching to it needs a single full vacuum.
+     * Must be called from the write handler.
+     *
+     * @return true if there are free pages left
+     */
+    private static boolean vacuumBatch(SQLiteDatabase db) {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            return false;
+        }
+        long freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        if (freePages > 0) {
+            try (Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + VACUUM_BATCH_PAGES + ")", null)) {
+                // pages are released while stepping through the statement
+                cursor.getCount();
+            }
+        }
+        return freePages > VACUUM_BATCH_PAGES;
+    }
 
     /**
      * Retrieve previous query history
@@ -172,38 +437,7 @@ public class DBHelper {
      * @return records with number of use
      */
     public static List<ValuedHistoryRecord> getHistory(Context context, int limit, HistoryMode historyMode) {
-        List<ValuedHistoryRecord> records;
-
-        SQLiteDatabase db = getDatabase(context);
-
-        Cursor cursor;
-        switch (historyMode) {
-            case FRECENCY:
-                cursor = getHistoryByFrecency(db, limit);
-                break;
-            case FREQUENCY:
-                cursor = getHistoryByFrequency(db, limit);
-                break;
-            case ADAPTIVE:
-                cursor = getHistoryByAdaptive(db, 36, limit);
-                break;
-            case TIME:
-                cursor = getHistoryByTime(db, limit);
-                break;
-            case ALPHABETICALLY:
-            case RECENCY:
-                cursor = getHistoryByRecency(db, limit);
-                break;
-            default:
-                cursor = getHistoryByRecency(db, limit);
-                Log.e(TAG, "Fallback to 'recency' for unknown history mode " + historyMode);
-                break;
-        }
-
-        records = readCursor(cursor);
-        cursor.close();
-
-        return records;
+        return getHistoryModel(context).getHistory(historyMode, limit, System.currentTimeMillis());
     }
 
 
@@ -214,20 +448,62 @@ public class DBHelper {
      * @return total number of use for the application
      */
     public static int getHistoryLength(Context context) {
-        SQLiteDatabase db = getDatabase(context);
+        return getHistoryModel(context).getUseCount();
+    }
+
+    /**
+     * Load history into memory, so that later history requests don't need to access the database.
+     * Should not be called from the UI thread.
+     *
+     * @param context android context
+     */
+    public static void loadHistory(Context context) {
+        getHistoryModel(context);
+    }
+
+    /**
+     * Get in-memory history, waits for it to be loaded on first use.
+     */
+    private static HistoryModel getHistoryModel(Context context) {
+        HistoryModel model = historyModel;
+        if (model != null) {
+            return model;
+        }
+        return callWrite(() -> loadHistoryModel(context));
+    }
 
-        // Cursor query (boolean distinct, String table, String[] columns,
-        // String selection, String[] selectionArgs, String groupBy, String
-        // having, String orderBy, String limit)
-        try (Cursor cursor = db.query(false, "history", new String[]{"COUNT(*)"}, null, null,
-                null, null, null, null)) {
-            cursor.moveToFirst();
-            return cursor.getInt(0);
+    /**
+     * Load history from the database, no history is written meanwhile.
+     * Pending items aren't written yet, they are added to the loaded history.
+     * Must be called from the write handler.
+     */
+    private static HistoryModel loadHistoryModel(Context context) {
+        if (historyModel != null) {
+            return historyModel;
         }
+        long start = System.currentTimeMillis();
+        HistoryModel model = new HistoryModel();
+        SQLiteDatabase db = getDatabase(context);
+        try (Cursor cursor = db.query("history", new String[]{"_id", "\"query\"", "record", "timeStamp", "count", "firstTimeStamp"},
+                null, null, null, null, "_id")) {
+            while (cursor.moveToNext()) {
+                long timeStamp = cursor.getLong(3);
+                long firstTimeStamp = cursor.isNull(5) ? timeStamp : cursor.getLong(5);
+                model.add(cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getInt(4), firstTimeStamp, timeStamp);
+            }
+        }
+        synchronized (pendingHistory) {
+            for (PendingHistoryItem item : pendingHistory) {
+                model.add(item.query, item.record, item.timeStamp);
+            }
+            historyModel = model;
+        }
+        Log.i(TAG, (System.currentTimeMillis() - start) + " milliseconds to load " + model.size() + " history entries");
+        return model;
     }
 
     /**
-     * Retrieve previously selected items for the query
+     * Retrieve previously selected items for queries starting with given query (case insensitive)
      *
      * @param context android context
      * @param query   query to run
@@ -235,17 +511,7 @@ public class DBHelper {
      */
     public static List<ValuedHistoryRecord> getPreviousResultsForQuery(Context context,
                                                                        String query) {
-        List<ValuedHistoryRecord> records;
-        SQLiteDatabase db = getDatabase(context);
-
-        // Cursor query (String table, String[] columns, String selection,
-        // String[] selectionArgs, String groupBy, String having, String
-        // orderBy)
-        Cursor cursor = db.query("history", new String[]{"record", "COUNT(*) AS count"},
-                "query LIKE ?", new String[]{query + "%"}, "record", null, "COUNT(*) DESC", "10");
-        records = readCursor(cursor);
-        cursor.close();
-        return records;
+        return getHistoryModel(context).getPreviousResultsForQuery(query, 10);
     }
 
     /**
@@ -255,29 +521,32 @@ public class DBHelper {
      * @param shortcut
      * @return true, if shortcut has changed
      */
+    @WorkerThread
     public static boolean insertShortcut(Context context, ShortcutRecord shortcut) {
-        SQLiteDatabase db = getDatabase(context);
-        // check if any field has changed
-        try (Cursor cursor = db.query("shortcuts", new String[]{"name", "package", "intent_uri"},
-                "name = ? and package = ? AND intent_uri = ?", new String[]{shortcut.name, shortcut.packageName, shortcut.intentUri}, null, null, null, null)) {
-            if (cursor.getCount() > 0) {
-                return false;
+        return callWrite(() -> {
+            SQLiteDatabase db = getDatabase(context);
+            // check if any field has changed
+            try (Cursor cursor = db.query("shortcuts", new String[]{"name", "package", "intent_uri"},
+                    "name = ? and package = ? AND intent_uri = ?", new String[]{shortcut.name, shortcut.packageName, shortcut.intentUri}, null, null, null, null)) {
+                if (cursor.getCount() > 0) {
+                    return false;
+                }
             }
-        }
 
-        ContentValues values = new ContentValues();
-        values.put("name", shortcut.name);
-        values.put("package", shortcut.packageName);
-        values.put("icon", (String) null); // Legacy field (for shortcuts before Oreo), not used anymore
-        values.put("icon_blob", (String) null); // Another legacy field (icon is dynamically retrieved)
-        values.put("intent_uri", shortcut.intentUri);
-
-        // do not add duplicate shortcuts
-        int rowsAffected = db.update("shortcuts", values, "package = ? AND intent_uri = ?", new String[]{shortcut.packageName, shortcut.intentUri});
-        if (rowsAffected == 0) {
-            db.insert("shortcuts", null, values);
-        }
-        return true;
+            ContentValues values = new ContentValues();
+            values.put("name", shortcut.name);
+            values.put("package", shortcut.packageName);
+            values.put("icon", (String) null); // Legacy field (for shortcuts before Oreo), not used anymore
+            values.put("icon_blob", (String) null); // Another legacy field (icon is dynamically retrieved)
+            values.put("intent_uri", shortcut.intentUri);
+
+            // do not add duplicate shortcuts
+            int rowsAffected = db.update("shortcuts", values, "package = ? AND intent_uri = ?", new String[]{shortcut.packageName, shortcut.intentUri});
+            if (rowsAffected == 0) {
+                db.insert("shortcuts", null, values);
+            }
+            return true;
+        });
     }
 
     /**
@@ -288,156 +557,85 @@ public class DBHelper {
      * @param intentUri
      * @return true, if shortcut was removed
      */
+    @WorkerThread
     public static boolean removeShortcut(Context context, String packageName, String intentUri) {
-        SQLiteDatabase db = getDatabase(context);
-        int rowsAffected = db.delete("shortcuts", "package = ? AND intent_uri = ?", new String[]{packageName, intentUri});
-        return rowsAffected > 0;
-    }
-
-    public static void addCustomAppName(Context context, String componentName, String newName) {
-        SQLiteDatabase db = getDatabase(context);
-
-        long id;
-        String sql = "INSERT OR ABORT INTO custom_apps(\"name\", \"component_name\", \"custom_flags\") VALUES (?,?,?)";
-        try {
-            SQLiteStatement statement = db.compileStatement(sql);
-            statement.bindString(1, newName);
-            statement.bindString(2, componentName);
-            statement.bindLong(3, AppRecord.FLAG_CUSTOM_NAME);
-            id = statement.executeInsert();
-            statement.close();
-        } catch (Exception e) {
-            id = -1;
-        }
-        if (id == -1) {
-            sql = "UPDATE custom_apps SET name=?,custom_flags=custom_flags|? WHERE component_name=?";
-            try {
-                SQLiteStatement statement = db.compileStatement(sql);
-                statement.bindString(1, newName);
-                statement.bindLong(2, AppRecord.FLAG_CUSTOM_NAME);
-                statement.bindString(3, componentName);
-                int count = statement.executeUpdateDelete();
-                if (count != 1) {
-                    Log.e(TAG, "Update name count = " + count);
-                }
-                statement.close();
-            } catch (Exception e) {
-                Log.e(TAG, "Insert or Update custom app name", e);
-            }
-        }
-    }
-
-
-    @Nullable
-    private static AppRecord getAppRecord(SQLiteDatabase db, String componentName) {
-        String[] selArgs = new String[]{componentName};
-        String[] columns = new String[]{"_id", "name", "component_name", "custom_flags"};
-        try (Cursor cursor = db.query("custom_apps", columns,
-                "component_name=?", selArgs, null, null, null)) {
-            if (cursor.moveToNext()) {
-                AppRecord entry = new AppRecord();
-
-                entry.dbId = cursor.getLong(0);
-                entry.name = cursor.getString(1);
-                entry.componentName = cursor.getString(2);
-                entry.flags = cursor.getInt(3);
-
-                return entry;
-            }
-        }
-        return null;
+        return callWrite(() -> {
+            SQLiteDatabase db = getDatabase(context);
+            int rowsAffected = db.delete("shortcuts", "package = ? AND intent_uri = ?", new String[]{packageName, intentUri});
+            return rowsAffected > 0;
+        });
     }
 
-    public static long addCustomAppIcon(Context context, String componentName) {
-        SQLiteDatabase db = getDatabase(context);
-
-        long id;
-        String sql = "INSERT OR ABORT INTO custom_apps(\"component_name\", \"custom_flags\") VALUES (?,?)";
-        try {
-            SQLiteStatement statement = db.compileStatement(sql);
-            statement.bindString(1, componentName);
-            statement.bindLong(2, AppRecord.FLAG_CUSTOM_ICON);
-            id = statement.executeInsert();
-            statement.close();
-        } catch (Exception e) {
-            id = -1;
-        }
-        if (id == -1) {
-            sql = "UPDATE custom_apps SET custom_flags=custom_flags|? WHERE component_name=?";
+    /**
+     * Insert custom data of an app.
+     * Replaces any data of the app, which should be updated with {@link #updateCustomApp(Context, AppRecord)} instead.
+     *
+     * @param context android context
+     * @param app     custom data, {@link AppRecord#dbId} is ignored
+     * @return _id of inserted app, -1 on error
+     */
+    @WorkerThread
+    public static long insertCustomApp(Context context, AppRecord app) {
+        return callWrite(() -> {
+            SQLiteDatabase db = getDatabase(context);
             try {
-                SQLiteStatement statement = db.compileStatement(sql);
-                statement.bindLong(1, AppRecord.FLAG_CUSTOM_ICON);
-                statement.bindString(2, componentName);
-                int count = statement.executeUpdateDelete();
-                if (count != 1) {
-                    Log.e(TAG, "Update `custom_flags` returned count=" + count);
-                }
-                statement.close();
+                SQLiteStatement statement = getStatement(db, "INSERT OR REPLACE INTO custom_apps(\"name\", \"component_name\", \"custom_flags\") VALUES (?,?,?)");
+                statement.bindString(1, app.name != null ? app.name : "");
+                statement.bindString(2, app.componentName);
+                statement.bindLong(3, app.flags);
+                return statement.executeInsert();
             } catch (Exception e) {
-                Log.e(TAG, "Update custom app icon", e);
+                Log.e(TAG, "Insert custom app " + app.componentName, e);
+                return -1L;
             }
-            AppRecord appRecord = getAppRecord(db, componentName);
-            id = appRecord != null ? appRecord.dbId : 0;
-        }
-        return id;
+        });
     }
 
-    public static long removeCustomAppIcon(Context context, String componentName) {
-        SQLiteDatabase db = getDatabase(context);
-        AppRecord app = getAppRecord(db, componentName);
-        if (app == null)
-            return 0;
-
-        if (app.hasCustomName()) {
-            // app has a custom name, just remove the custom icon
-            String sql = "UPDATE custom_apps SET custom_flags=custom_flags&~? WHERE component_name=?";
+    /**
+     * Update name and flags of custom app with given {@link AppRecord#dbId}
+     *
+     * @param context android context
+     * @param app     custom data
+     */
+    public static void updateCustomApp(Context context, AppRecord app) {
+        runWrite(() -> {
+            SQLiteDatabase db = getDatabase(context);
             try {
-                SQLiteStatement statement = db.compileStatement(sql);
-                statement.bindLong(1, AppRecord.FLAG_CUSTOM_ICON);
-                statement.bindString(2, componentName);
+                SQLiteStatement statement = getStatement(db, "UPDATE custom_apps SET name=?,custom_flags=? WHERE _id=?");
+                statement.bindString(1, app.name != null ? app.name : "");
+                statement.bindLong(2, app.flags);
+                statement.bindLong(3, app.dbId);
                 int count = statement.executeUpdateDelete();
                 if (count != 1) {
-                    Log.e(TAG, "Update `custom_flags` returned count=" + count);
+                    Log.e(TAG, "Update custom app count = " + count);
                 }
-                statement.close();
             } catch (Exception e) {
-                Log.e(TAG, "remove custom app icon", e);
+                Log.e(TAG, "Update custom app " + app.componentName, e);
             }
-        } else {
-            // nothing custom about this app anymore, remove entry
-            db.delete("custom_apps", "_id=?", new String[]{String.valueOf(app.dbId)});
-        }
-
-        return app.dbId;
+        });
     }
 
-    public static void removeCustomAppName(Context context, String componentName) {
-        SQLiteDatabase db = getDatabase(context);
-        AppRecord app = getAppRecord(db, componentName);
-        if (app == null)
-            return;
-
-        if (app.hasCustomIcon()) {
-            // app has a custom icon, just remove the custom name
-            String sql = "UPDATE custom_apps SET custom_flags=custom_flags&~? WHERE component_name=?";
-            try {
-                SQLiteStatement statement = db.compileStatement(sql);
-                statement.bindLong(1, AppRecord.FLAG_CUSTOM_NAME);
-                statement.bindString(2, componentName);
-                int count = statement.executeUpdateDelete();
-                if (count != 1) {
-                    Log.e(TAG, "Update `custom_flags` returned count=" + count);
-                }
-                statement.close();
-            } catch (Exception e) {
-                Log.e(TAG, "remove custom app icon", e);
-            }
-        } else {
-            // nothing custom about this app anymore, remove entry
-            db.delete("custom_apps", "_id=?", new String[]{String.valueOf(app.dbId)});
-        }
+    /**
+     * Remove custom app with given _id, when nothing is custom about it anymore
+     *
+     * @param context android context
+     * @param dbId    _id of custom app
+     */
+    public static void deleteCustomApp(Context context, long dbId) {
+        runWrite(() -> {
+            SQLiteDatabase db = getDatabase(context);
+            SQLiteStatement statement = getStatement(db, "DELETE FROM custom_apps WHERE _id=?");
+            statement.bindLong(1, dbId);
+            statement.executeUpdateDelete();
+        });
     }
 
+    /**
+     * Read custom data of all apps, kept in memory by {@link fr.neamar.kiss.DataHandler#getCustomAppData()}
+     *
+     * @param context android context
+     * @return custom data by component name
+     */
     public static Map<String, AppRecord> getCustomAppData(Context context) {
         Map<String, AppRecord> records;
         SQLiteDatabase db = getDatabase(context);
@@ -491,8 +689,11 @@ public class DBHelper {
 
     /**
      * Retrieve a list of all shortcuts, without icons.
+     * Waits for pending writes, so must not be called from the UI thread.
      */
     public static List<ShortcutRecord> getShortcuts(Context context) {
+        // shortcuts are removed without waiting, and reloaded right after
+        awaitWrites();
         SQLiteDatabase db = getDatabase(context);
 
         // Cursor query (String table, String[] columns, String selection,
@@ -523,44 +724,63 @@ public class DBHelper {
      * Remove shortcuts for a given package name
      */
     public static void removeShortcuts(Context context, String packageName) {
-        SQLiteDatabase db = getDatabase(context);
+        runWrite(() -> {
+            SQLiteDatabase db = getDatabase(context);
 
-        // remove shortcuts
-        db.delete("shortcuts", "package LIKE ?", new String[]{"%" + packageName + "%"});
+            // remove shortcuts
+            db.delete("shortcuts", "package LIKE ?", new String[]{"%" + packageName + "%"});
+        });
     }
 
     public static void removeAllShortcuts(Context context) {
-        SQLiteDatabase db = getDatabase(context);
-        // delete whole table
-        db.delete("shortcuts", null, null);
+        runWrite(() -> {
+            SQLiteDatabase db = getDatabase(context);
+            // delete whole table
+            db.delete("shortcuts", null, null);
+        });
     }
 
     /**
-     * Insert new tags for given id
+     * Replace tags of given ids, in a single transaction
      *
-     * @param context android context
-     * @param tag     tag to insert
-     * @param record  record to insert
+     * @param context  android context
+     * @param tagsById tags to store by id, replacing existing tags of these ids
      */
-    public static void insertTagsForId(Context context, String tag, String record) {
-        SQLiteDatabase db = getDatabase(context);
-        ContentValues values = new ContentValues();
-        values.put("tag", tag);
-        values.put("record", record);
-        db.insert("tags", null, values);
+    public static void setTagsForIds(Context context, Map<String, String> tagsById) {
+        runWrite(() -> writeTags(getDatabase(context), tagsById, false));
     }
 
-
     /**
-     * Delete
+     * Replace all tags, in a single transaction
      *
-     * @param context android context
-     * @param record  record to delete
+     * @param context  android context
+     * @param tagsById tags to store by id, tags of other ids are deleted
      */
-    public static void deleteTagsForId(Context context, String record) {
-        SQLiteDatabase db = getDatabase(context);
+    public static void replaceTags(Context context, Map<String, String> tagsById) {
+        runWrite(() -> writeTags(getDatabase(context), tagsById, true));
+    }
 
-        db.delete("tags", "record = ?", new String[]{record});
+    private static void writeTags(SQLiteDatabase db, Map<String, String> tagsById, boolean deleteAll) {
+        db.beginTransaction();
+        try {
+            if (deleteAll) {
+                db.execSQL("DELETE FROM tags;");
+            }
+            for (Map.Entry<String, String> entry : tagsById.entrySet()) {
+                if (!deleteAll) {
+                    SQLiteStatement delete = getStatement(db, "DELETE FROM tags WHERE record = ?");
+                    delete.bindString(1, entry.getKey());
+                    delete.executeUpdateDelete();
+                }
+                SQLiteStatement insert = getStatement(db, "INSERT INTO tags(tag, record) VALUES (?,?)");
+                insert.bindString(1, entry.getValue());
+                insert.bindString(2, entry.getKey());
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
     /**
@@ -569,9 +789,11 @@ public class DBHelper {
      * @param context android context
      */
     public static void deleteTags(Context context) {
-        SQLiteDatabase db = getDatabase(context);
+        runWrite(() -> {
+            SQLiteDatabase db = getDatabase(context);
 
-        db.execSQL("DELETE FROM tags;");
+            db.execSQL("DELETE FROM tags;");
+        });
     }
 
     public static Map<String, String> loadTags(Context context) {
@@ -591,4 +813,119 @@ public class DBHelper {
         return records;
     }
 
+    /**
+     * State of the history maintenance between batches: deletion of old items, roll up, then vacuum
+     */
+    private static final class HistoryMaintenance {
+        final long minTimeStamp;
+        final long rollUpTimeStamp;
+        /**
+         * Roll ups left to write, read on first roll up batch
+         */
+        List<HistoryRollUp> rollUps = null;
+        boolean vacuuming = false;
+        int batchCount = 0;
+        long time = 0;
+
+        HistoryMaintenance(long minTimeStamp, long rollUpTimeStamp) {
+            this.minTimeStamp = minTimeStamp;
+            this.rollUpTimeStamp = rollUpTimeStamp;
+        }
+
+        /**
+         * Run next batch of the maintenance.
+         * Must be called from the write handler.
+         *
+         * @return true if the maintenance is over
+         */
+        boolean runBatch(SQLiteDatabase db) {
+            batchCount++;
+            if (vacuuming) {
+                return !vacuumBatch(db);
+            }
+            if (rollUps == null) {
+                if (deleteHistoryBatch(db, minTimeStamp) >= MAINTENANCE_BATCH_SIZE) {
+                    return false;
+                }
+                rollUps = readHistoryRollUps(db, rollUpTimeStamp);
+            }
+
+            // write roll ups merging up to MAINTENANCE_BATCH_SIZE items
+            List<HistoryRollUp> batch = new ArrayList<>();
+            int size = 0;
+            while (!rollUps.isEmpty() && (batch.isEmpty() || size + rollUps.get(rollUps.size() - 1).mergedIds.size() <= MAINTENANCE_BATCH_SIZE)) {
+                HistoryRollUp rollUp = rollUps.remove(rollUps.size() - 1);
+                size += rollUp.mergedIds.size();
+                batch.add(rollUp);
+            }
+            if (!batch.isEmpty()) {
+                Log.i(TAG, "Rolled up " + writeHistoryRollUps(db, batch) + " history items");
+            }
+            if (rollUps.isEmpty()) {
+                vacuuming = true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * History items of a record on a single day, merged into the last one
+     */
+    private static final class HistoryRollUp {
+        final String record;
+        final String day;
+        final List<Long> mergedIds = new ArrayList<>();
+        /**
+         * Number of uses of every query
+         */
+        private final Map<String, int[]> queryCounts = new HashMap<>();
+        private int queryCount = 0;
+        long id = -1;
+        String query = null;
+        int count = 0;
+        long firstTimeStamp = Long.MAX_VALUE;
+        long lastTimeStamp = Long.MIN_VALUE;
+
+        HistoryRollUp(String record, String day) {
+            this.record = record;
+            this.day = day;
+        }
+
+        /**
+         * Add item, ids must be increasing
+         */
+        void add(long id, String query, int count, long firstTimeStamp, long lastTimeStamp) {
+            if (this.id != -1) {
+                mergedIds.add(this.id);
+            }
+            this.id = id;
+            this.count += count;
+            this.firstTimeStamp = Math.min(this.firstTimeStamp, firstTimeStamp);
+            this.lastTimeStamp = Math.max(this.lastTimeStamp, lastTimeStamp);
+
+            // most used query, the most recent one on ties
+            int[] uses = queryCounts.get(query);
+            if (uses == null) {
+                uses = new int[]{0};
+                queryCounts.put(query, uses);
+            }
+            uses[0] += count;
+            if (uses[0] >= queryCount) {
+                queryCount = uses[0];
+                this.query = query;
+            }
+        }
+    }
+
+    private static final class PendingHistoryItem {
+        final String query;
+        final String record;
+        final long timeStamp;
+
+        PendingHistoryItem(String query, String record, long timeStamp) {
+            this.query = query;
+            this.record = record;
+            this.timeStamp = timeStamp;
+        }
+    }
 }
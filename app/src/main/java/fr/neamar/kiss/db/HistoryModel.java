@@ -0,0 +1,592 @@
+package fr.neamar.kiss.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import fr.neamar.kiss.utils.BoundedPriorityQueue;
+
+/**
+ * In-memory copy of the history table, answering all {@link HistoryMode} rankings without querying SQLite.
+ * <p>
+ * Entries are kept in insertion order (ascending _id), and every record keeps its number of uses
+ * and its last use. Rankings therefore only need one pass over the records (or over the frecency
+ * window) instead of a GROUP BY over the whole table.
+ * <p>
+ * For time based modes every record also keeps exponentially decayed uses: a total for
+ * {@link HistoryMode#ADAPTIVE}, and a histogram by hour of the week for {@link HistoryMode#TIME}.
+ * Decay is applied lazily, weights are stored relative to {@link #weightEpoch}, which is moved
+ * forward (scaling all weights) when new uses get too far from it.
+ * <p>
+ * Uses of records are also counted for every prefix of the query typed before, so that records
+ * previously selected for a query are found with a single lookup.
+ * <p>
+ * An entry is either a single use, or several uses of a record rolled up by {@link DBHelper}
+ * (see {@link #add(long, String, String, int, long, long)}).
+ * Thread safe.
+ */
+class HistoryModel {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long MS_PER_HOUR = 3600000L;
+    private static final long MS_PER_DAY = 86400000L;
+    private static final int HOURS_PER_DAY = 24;
+    private static final int HOURS_PER_WEEK = 7 * HOURS_PER_DAY;
+    /**
+     * Mean life of a use for {@link HistoryMode#ADAPTIVE}, in hours
+     */
+    static final int ADAPTIVE_HOURS = 36;
+    private static final long ADAPTIVE_DECAY_MS = ADAPTIVE_HOURS * MS_PER_HOUR;
+    /**
+     * Minimum decayed uses for a record to be part of {@link HistoryMode#ADAPTIVE} history:
+     * a single use one mean life ago
+     */
+    private static final double ADAPTIVE_MIN_WEIGHT = Math.exp(-1);
+    /**
+     * Mean life of a use for {@link HistoryMode#TIME}
+     */
+    private static final long TIME_DECAY_MS = 30 * MS_PER_DAY;
+    /**
+     * Weight of uses on other days of the week for {@link HistoryMode#TIME}
+     */
+    private static final double TIME_OTHER_DAY_WEIGHT = 0.5;
+    /**
+     * Max distance of a use to {@link #weightEpoch} before weights are rebased,
+     * keeps the weights of both modes far below the double range
+     */
+    private static final long REBASE_MS = 500 * ADAPTIVE_DECAY_MS;
+
+    private final TimeZone timeZone;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    /**
+     * Time of last use of every entry
+     */
+    private long[] timeStamps = new long[INITIAL_CAPACITY];
+    /**
+     * Time of first use of every entry, same as {@link #timeStamps} for single uses
+     */
+    private long[] firstTimeStamps = new long[INITIAL_CAPACITY];
+    /**
+     * Number of uses of every entry
+     */
+    private int[] entryCounts = new int[INITIAL_CAPACITY];
+    private RecordStats[] entryRecords = new RecordStats[INITIAL_CAPACITY];
+    /**
+     * Query of every entry, folded with {@link #foldCase(String)}
+     */
+    private String[] entryQueries = new String[INITIAL_CAPACITY];
+    private int size = 0;
+    /**
+     * Number of uses of all entries
+     */
+    private int useCount = 0;
+    private final Map<String, RecordStats> statsByRecord = new HashMap<>();
+    /**
+     * Number of uses of every record for every prefix of the queries used to find it
+     */
+    private final Map<String, Map<RecordStats, int[]>> countsByQueryPrefix = new HashMap<>();
+    /**
+     * Highest id ever added, kept when entries are removed
+     */
+    private long maxId = 0;
+    /**
+     * Time at which decayed weights of records are stored with their full value
+     */
+    private long weightEpoch = 0;
+
+    HistoryModel() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * @param timeZone time zone used to find the hour of the week of uses
+     */
+    HistoryModel(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Add an entry that is not written to the database yet, with an id following all known ids.
+     * Ids are only used to order entries, they don't need to match the _id given later by SQLite.
+     *
+     * @param query     query used to find the record
+     * @param record    record used
+     * @param timeStamp time of use
+     */
+    synchronized void add(String query, String record, long timeStamp) {
+        add(maxId + 1, query, record, timeStamp);
+    }
+
+    /**
+     * Add an entry, ids must be increasing (as given by SQLite for the history table)
+     *
+     * @param id        _id of the entry
+     * @param query     query used to find the record
+     * @param record    record used
+     * @param timeStamp time of use
+     */
+    synchronized void add(long id, String query, String record, long timeStamp) {
+        add(id, query, record, 1, timeStamp, timeStamp);
+    }
+
+    /**
+     * Add an entry standing for several uses of a record, ids must be increasing.
+     * Uses are assumed to be evenly spread from first to last use.
+     *
+     * @param id             _id of the entry
+     * @param query          query used most often to find the record
+     * @param record         record used
+     * @param count          number of uses
+     * @param firstTimeStamp time of first use
+     * @param lastTimeStamp  time of last use
+     */
+    synchronized void add(long id, String query, String record, int count, long firstTimeStamp, long lastTimeStamp) {
+        maxId = Math.max(maxId, id);
+        RecordStats stats = statsByRecord.get(record);
+        if (stats == null) {
+            stats = new RecordStats(record);
+            statsByRecord.put(record, stats);
+        }
+        String foldedQuery = foldCase(query);
+        countUses(stats, id, count, firstTimeStamp, lastTimeStamp, foldedQuery);
+
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            timeStamps = Arrays.copyOf(timeStamps, capacity);
+            firstTimeStamps = Arrays.copyOf(firstTimeStamps, capacity);
+            entryCounts = Arrays.copyOf(entryCounts, capacity);
+            entryRecords = Arrays.copyOf(entryRecords, capacity);
+            entryQueries = Arrays.copyOf(entryQueries, capacity);
+        }
+        ids[size] = id;
+        timeStamps[size] = lastTimeStamp;
+        firstTimeStamps[size] = firstTimeStamp;
+        entryCounts[size] = count;
+        entryRecords[size] = stats;
+        entryQueries[size] = foldedQuery;
+        size += 1;
+    }
+
+    private void countUses(RecordStats stats, long id, int count, long firstTimeStamp, long lastTimeStamp, String foldedQuery) {
+        stats.count += count;
+        stats.lastId = id;
+        useCount += count;
+        addQueryPrefixes(foldedQuery, stats, count);
+
+        if (lastTimeStamp - weightEpoch > REBASE_MS) {
+            rebaseWeights(lastTimeStamp);
+        }
+        if (stats.hourOfWeekWeights == null) {
+            stats.hourOfWeekWeights = new double[HOURS_PER_WEEK];
+            stats.hourOfDayWeights = new double[HOURS_PER_DAY];
+        }
+        for (int i = 0; i < count; i += 1) {
+            long timeStamp = count == 1 ? lastTimeStamp : firstTimeStamp + (lastTimeStamp - firstTimeStamp) * i / (count - 1);
+            double age = timeStamp - weightEpoch;
+            stats.recentWeight += Math.exp(age / ADAPTIVE_DECAY_MS);
+            int hourOfWeek = getHourOfWeek(timeStamp);
+            double timeWeight = Math.exp(age / TIME_DECAY_MS);
+            stats.hourOfWeekWeights[hourOfWeek] += timeWeight;
+            stats.hourOfDayWeights[hourOfWeek % HOURS_PER_DAY] += timeWeight;
+        }
+    }
+
+    /**
+     * Decay all weights to given epoch
+     */
+    private void rebaseWeights(long epoch) {
+        double elapsed = epoch - weightEpoch;
+        double adaptiveFactor = Math.exp(-elapsed / ADAPTIVE_DECAY_MS);
+        double timeFactor = Math.exp(-elapsed / TIME_DECAY_MS);
+        for (RecordStats stats : statsByRecord.values()) {
+            stats.recentWeight *= adaptiveFactor;
+            if (stats.hourOfWeekWeights != null) {
+                for (int i = 0; i < HOURS_PER_WEEK; i += 1) {
+                    stats.hourOfWeekWeights[i] *= timeFactor;
+                }
+                for (int i = 0; i < HOURS_PER_DAY; i += 1) {
+                    stats.hourOfDayWeights[i] *= timeFactor;
+                }
+            }
+        }
+        weightEpoch = epoch;
+    }
+
+    /**
+     * @return hour of the week of given time in local time, 0 is monday from 0:00 to 1:00
+     */
+    private int getHourOfWeek(long timeStamp) {
+        long localTime = timeStamp + timeZone.getOffset(timeStamp);
+        long days = floorDiv(localTime, MS_PER_DAY);
+        // 1970-01-01 was a thursday
+        int dayOfWeek = (int) (days + 3 - floorDiv(days + 3, 7) * 7);
+        int hourOfDay = (int) ((localTime - days * MS_PER_DAY) / MS_PER_HOUR);
+        return dayOfWeek * HOURS_PER_DAY + hourOfDay;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long result = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            result -= 1;
+        }
+        return result;
+    }
+
+    private void addQueryPrefixes(String foldedQuery, RecordStats stats, int count) {
+        if (foldedQuery == null) {
+            return;
+        }
+        for (int end = 1; end <= foldedQuery.length(); end += 1) {
+            String prefix = foldedQuery.substring(0, end);
+            Map<RecordStats, int[]> counts = countsByQueryPrefix.get(prefix);
+            if (counts == null) {
+                counts = new HashMap<>();
+                countsByQueryPrefix.put(prefix, counts);
+            }
+            int[] prefixCount = counts.get(stats);
+            if (prefixCount == null) {
+                counts.put(stats, new int[]{count});
+            } else {
+                prefixCount[0] += count;
+            }
+        }
+    }
+
+    /**
+     * Remove all entries of given record
+     */
+    synchronized void remove(String record) {
+        RecordStats stats = statsByRecord.remove(record);
+        if (stats == null) {
+            return;
+        }
+        useCount -= stats.count;
+        int kept = 0;
+        for (int i = 0; i < size; i += 1) {
+            if (entryRecords[i] != stats) {
+                moveEntry(i, kept);
+                kept += 1;
+            }
+        }
+        truncate(kept);
+
+        Iterator<Map<RecordStats, int[]>> iterator = countsByQueryPrefix.values().iterator();
+        while (iterator.hasNext()) {
+            Map<RecordStats, int[]> counts = iterator.next();
+            if (counts.remove(stats) != null && counts.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all entries used before given time
+     */
+    synchronized void removeOlderThan(long timeStamp) {
+        int kept = 0;
+        for (int i = 0; i < size; i += 1) {
+            if (timeStamps[i] >= timeStamp) {
+                moveEntry(i, kept);
+                kept += 1;
+            }
+        }
+        if (kept == size) {
+            return;
+        }
+        truncate(kept);
+
+        // recompute stats of remaining entries
+        statsByRecord.clear();
+        countsByQueryPrefix.clear();
+        weightEpoch = 0;
+        useCount = 0;
+        for (int i = 0; i < size; i += 1) {
+            RecordStats stats = statsByRecord.get(entryRecords[i].record);
+            if (stats == null) {
+                stats = new RecordStats(entryRecords[i].record);
+                statsByRecord.put(stats.record, stats);
+            }
+            entryRecords[i] = stats;
+            countUses(stats, ids[i], entryCounts[i], firstTimeStamps[i], timeStamps[i], entryQueries[i]);
+        }
+    }
+
+    synchronized void clear() {
+        statsByRecord.clear();
+        countsByQueryPrefix.clear();
+        weightEpoch = 0;
+        useCount = 0;
+        truncate(0);
+    }
+
+    /**
+     * Get records most often used after typing a query starting with given one.
+     * Same as the previous SQL {@code query LIKE 'query%'}: ASCII letters are case insensitive.
+     *
+     * @param query query typed so far
+     * @param limit max number of records to return
+     * @return records, most used first, with number of uses
+     */
+    synchronized List<ValuedHistoryRecord> getPreviousResultsForQuery(String query, int limit) {
+        String foldedQuery = foldCase(query);
+        Map<RecordStats, int[]> counts = foldedQuery == null ? null : countsByQueryPrefix.get(foldedQuery);
+        if (counts == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        BoundedPriorityQueue<Ranking> queue = new BoundedPriorityQueue<>(limit, Ranking.COMPARATOR);
+        for (Map.Entry<RecordStats, int[]> entry : counts.entrySet()) {
+            int count = entry.getValue()[0];
+            queue.offer(new Ranking(entry.getKey(), count, count));
+        }
+        return toRecords(queue);
+    }
+
+    /**
+     * @return query with ASCII letters in lower case (as compared by SQLite LIKE), null if query is empty
+     */
+    private static String foldCase(String query) {
+        if (query == null || query.isEmpty()) {
+            return null;
+        }
+        char[] chars = null;
+        for (int i = 0; i < query.length(); i += 1) {
+            char c = query.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = query.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars == null ? query : new String(chars);
+    }
+
+    /**
+     * @return number of entries
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return number of uses of all entries
+     */
+    synchronized int getUseCount() {
+        return useCount;
+    }
+
+    /**
+     * Get most relevant records for given history mode
+     *
+     * @param historyMode ranking to use
+     * @param limit       max number of records to return
+     * @param now         current time
+     * @return records, best first, with a mode dependent value
+     */
+    synchronized List<ValuedHistoryRecord> getHistory(HistoryMode historyMode, int limit, long now) {
+        if (limit <= 0 || size == 0) {
+            return new ArrayList<>();
+        }
+        switch (historyMode) {
+            case FRECENCY:
+                return getHistoryByFrecency(limit);
+            case FREQUENCY:
+                return getHistoryByFrequency(limit);
+            case ADAPTIVE:
+                return getHistoryByAdaptive(limit, now);
+            case TIME:
+                return getHistoryByTime(limit, now);
+            case ALPHABETICALLY:
+            case RECENCY:
+            default:
+                return getHistoryByRecency(limit);
+        }
+    }
+
+    private List<ValuedHistoryRecord> getHistoryByRecency(int limit) {
+        BoundedPriorityQueue<Ranking> queue = new BoundedPriorityQueue<>(limit, Ranking.COMPARATOR);
+        for (RecordStats stats : statsByRecord.values()) {
+            queue.offer(new Ranking(stats, stats.lastId, 1));
+        }
+        return toRecords(queue);
+    }
+
+    private List<ValuedHistoryRecord> getHistoryByFrequency(int limit) {
+        BoundedPriorityQueue<Ranking> queue = new BoundedPriorityQueue<>(limit, Ranking.COMPARATOR);
+        for (RecordStats stats : statsByRecord.values()) {
+            queue.offer(new Ranking(stats, stats.count, stats.count));
+        }
+        return toRecords(queue);
+    }
+
+    /**
+     * Uses among the last {@code limit * 30} uses divided by the number of entries since the last use.
+     * The window counts uses rather than entries, so that rolled up entries don't make it cover more uses,
+     * only the most recent uses of the oldest entry in the window are counted.
+     * Ids of merged uses are kept by the rolled up entries as gaps, entries since the last use don't change.
+     */
+    private List<ValuedHistoryRecord> getHistoryByFrecency(int limit) {
+        long remainingUses = limit * 30L;
+        Map<RecordStats, int[]> counts = new HashMap<>();
+        for (int i = size - 1; i >= 0 && remainingUses > 0; i -= 1) {
+            int uses = (int) Math.min(entryCounts[i], remainingUses);
+            remainingUses -= uses;
+            int[] count = counts.get(entryRecords[i]);
+            if (count == null) {
+                counts.put(entryRecords[i], new int[]{uses});
+            } else {
+                count[0] += uses;
+            }
+        }
+
+        long lastId = ids[size - 1];
+        BoundedPriorityQueue<Ranking> queue = new BoundedPriorityQueue<>(limit, Ranking.COMPARATOR);
+        for (Map.Entry<RecordStats, int[]> entry : counts.entrySet()) {
+            RecordStats stats = entry.getKey();
+            int count = entry.getValue()[0];
+            queue.offer(new Ranking(stats, count / (lastId - stats.lastId + 0.001), count));
+        }
+        return toRecords(queue);
+    }
+
+    /**
+     * Uses decayed with a mean life of {@link #ADAPTIVE_HOURS}, records without enough recent uses are ignored
+     */
+    private List<ValuedHistoryRecord> getHistoryByAdaptive(int limit, long now) {
+        double decay = Math.exp(-(double) (now - weightEpoch) / ADAPTIVE_DECAY_MS);
+        BoundedPriorityQueue<Ranking> queue = new BoundedPriorityQueue<>(limit, Ranking.COMPARATOR);
+        for (RecordStats stats : statsByRecord.values()) {
+            double weight = stats.recentWeight * decay;
+            if (weight >= ADAPTIVE_MIN_WEIGHT) {
+                queue.offer(new Ranking(stats, weight, (int) Math.round(weight)));
+            }
+        }
+        return toRecords(queue);
+    }
+
+    /**
+     * Get the history items used closest to this time of day, preferably on the same day of the week.
+     * <p>
+     * Decayed uses in every hour of the week are weighted by their distance to the current hour of the day,
+     * from 1 for the same hour to 0 for twelve hours apart, uses on other days of the week count for
+     * {@link #TIME_OTHER_DAY_WEIGHT}. Decay makes older uses count less, so no cutoff is needed.
+     * <p>
+     * Uses of all days are counted with the other day weight from the histogram by hour of the day,
+     * then uses of the current day of the week are added with the remaining weight.
+     */
+    private List<ValuedHistoryRecord> getHistoryByTime(int limit, long now) {
+        int hourOfWeek = getHourOfWeek(now);
+        int dayStart = hourOfWeek - hourOfWeek % HOURS_PER_DAY;
+        double[] kernel = getTimeKernel(hourOfWeek % HOURS_PER_DAY);
+        double decay = Math.exp(-(double) (now - weightEpoch) / TIME_DECAY_MS);
+        BoundedPriorityQueue<Ranking> queue = new BoundedPriorityQueue<>(limit, Ranking.COMPARATOR);
+        for (RecordStats stats : statsByRecord.values()) {
+            double allDays = 0;
+            double sameDay = 0;
+            for (int i = 0; i < HOURS_PER_DAY; i += 1) {
+                allDays += stats.hourOfDayWeights[i] * kernel[i];
+                sameDay += stats.hourOfWeekWeights[dayStart + i] * kernel[i];
+            }
+            double score = TIME_OTHER_DAY_WEIGHT * allDays + (1 - TIME_OTHER_DAY_WEIGHT) * sameDay;
+            if (score > 0) {
+                queue.offer(new Ranking(stats, score, (int) Math.round(score * decay)));
+            }
+        }
+        return toRecords(queue);
+    }
+
+    /**
+     * @return weight of uses in every hour of the day, seen from given hour of the day
+     */
+    private static double[] getTimeKernel(int hourOfDay) {
+        double[] kernel = new double[HOURS_PER_DAY];
+        for (int i = 0; i < HOURS_PER_DAY; i += 1) {
+            int distance = Math.abs(i - hourOfDay);
+            distance = Math.min(distance, HOURS_PER_DAY - distance);
+            kernel[i] = 1 - distance / (HOURS_PER_DAY / 2.0);
+        }
+        return kernel;
+    }
+
+    private static List<ValuedHistoryRecord> toRecords(BoundedPriorityQueue<Ranking> queue) {
+        List<ValuedHistoryRecord> records = new ArrayList<>(queue.size());
+        while (!queue.isEmpty()) {
+            Ranking ranking = queue.poll();
+            ValuedHistoryRecord record = new ValuedHistoryRecord();
+            record.record = ranking.stats.record;
+            record.value = ranking.value;
+            records.add(record);
+        }
+        // queue returns worst first
+        Collections.reverse(records);
+        return records;
+    }
+
+    private void moveEntry(int from, int to) {
+        ids[to] = ids[from];
+        timeStamps[to] = timeStamps[from];
+        firstTimeStamps[to] = firstTimeStamps[from];
+        entryCounts[to] = entryCounts[from];
+        entryRecords[to] = entryRecords[from];
+        entryQueries[to] = entryQueries[from];
+    }
+
+    private void truncate(int newSize) {
+        Arrays.fill(entryRecords, newSize, size, null);
+        Arrays.fill(entryQueries, newSize, size, null);
+        size = newSize;
+    }
+
+    private static final class RecordStats {
+        final String record;
+        int count = 0;
+        long lastId = -1;
+        /**
+         * Uses decayed for {@link HistoryMode#ADAPTIVE}, relative to {@link #weightEpoch}
+         */
+        double recentWeight = 0;
+        /**
+         * Uses decayed for {@link HistoryMode#TIME} by hour of the week, relative to {@link #weightEpoch}
+         */
+        double[] hourOfWeekWeights = null;
+        /**
+         * Sum of {@link #hourOfWeekWeights} for every hour of the day
+         */
+        double[] hourOfDayWeights = null;
+
+        RecordStats(String record) {
+            this.record = record;
+        }
+    }
+
+    private static final class Ranking {
+        /**
+         * Higher score first, most recently used first for same score
+         */
+        static final Comparator<Ranking> COMPARATOR = (lhs, rhs) -> {
+            int result = Double.compare(lhs.score, rhs.score);
+            if (result == 0) {
+                result = Long.compare(lhs.stats.lastId, rhs.stats.lastId);
+            }
+            return result;
+        };
+
+        final RecordStats stats;
+        final double score;
+        final int value;
+
+        Ranking(RecordStats stats, double score, int value) {
+            this.stats = stats;
+            this.score = score;
+            this.value = value;
+        }
+    }
+}
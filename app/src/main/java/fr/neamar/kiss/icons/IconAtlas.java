@@ -0,0 +1,410 @@
+package fr.neamar.kiss.icons;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Icons cached in a single memory-mapped file, as raw ARGB_8888 pixels.
+ * <p>
+ * Every icon is stored in a slot of fixed size: a header with its key and dimensions, then its pixels.
+ * Icons larger than the icon size are scaled down to the size they are displayed at, halving their size
+ * as long as possible so that every pixel is filtered. Shaped icons are drawn at twice the size because
+ * clipping isn't antialiased, storing them at that size would take four times the space for little gain.
+ * Getting an icon copies its pixels from the mapped file into a new bitmap, without opening any file
+ * or decoding any PNG.
+ * <p>
+ * The slots by key are kept in memory, they are read from the slot headers when the file is opened.
+ * A slot is marked as used only once its pixels are written, slots written partially are ignored.
+ * The file grows up to a max size, then the least recently used icons are replaced. Recent uses are
+ * only known in memory, after the file is opened again icons are replaced in order of slots.
+ * Thread safe.
+ */
+public class IconAtlas {
+    private static final String TAG = IconAtlas.class.getSimpleName();
+    private static final int MAGIC = 0x4b495343;
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * magic, version, icon size, slot count
+     */
+    private static final int FILE_HEADER_SIZE = 16;
+    /**
+     * used, width, height, key length, key
+     */
+    private static final int SLOT_HEADER_SIZE = 512;
+    private static final int MAX_KEY_LENGTH = SLOT_HEADER_SIZE - 16;
+    private static final int SLOT_USED = 1;
+    private static final int INITIAL_SLOT_COUNT = 32;
+
+    private final File file;
+    private final int iconSize;
+    private final int slotSize;
+    private final int maxSlotCount;
+    /**
+     * Used slots, least recently used first
+     */
+    private final LinkedHashMap<String, Integer> slotsByKey = new LinkedHashMap<>(INITIAL_SLOT_COUNT, 0.75f, true);
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private RandomAccessFile randomAccessFile = null;
+    private MappedByteBuffer buffer = null;
+    private int slotCount = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+    private int evictionCount = 0;
+    /**
+     * Set when the file can't be used, so that it isn't opened again for every icon
+     */
+    private boolean failed = false;
+    /**
+     * Set once cleared, the file may be used by a new atlas afterwards
+     */
+    private boolean closed = false;
+
+    /**
+     * @param file         file of the atlas, created if needed
+     * @param iconSize     max width and height of icons in pixels
+     * @param maxIconCount max number of icons, the file grows up to that many slots
+     */
+    public IconAtlas(@NonNull File file, int iconSize, int maxIconCount) {
+        this.file = file;
+        this.iconSize = iconSize;
+        this.slotSize = getSlotSize(iconSize);
+        this.maxSlotCount = Math.max(1, Math.min(maxIconCount, (Integer.MAX_VALUE - FILE_HEADER_SIZE) / slotSize));
+    }
+
+    /**
+     * @param iconSize max width and height of icons in pixels
+     * @return size in bytes taken by every icon in the file
+     */
+    private static int getSlotSize(int iconSize) {
+        return SLOT_HEADER_SIZE + iconSize * iconSize * 4;
+    }
+
+    /**
+     * @param key key of icon
+     * @return new bitmap with pixels of icon, null if icon is not in atlas
+     */
+    @Nullable
+    public synchronized Bitmap get(@NonNull String key) {
+        if (!open()) {
+            return null;
+        }
+        Integer slot = slotsByKey.get(key);
+        if (slot == null) {
+            missCount += 1;
+            return null;
+        }
+        int offset = getSlotOffset(slot);
+        if (!hasKey(offset, key.getBytes(UTF_8))) {
+            // slot was overwritten behind our back
+            Log.w(TAG, "Slot " + slot + " doesn't contain icon " + key);
+            freeSlot(key, slot);
+            missCount += 1;
+            return null;
+        }
+        int width = buffer.getInt(offset + 4);
+        int height = buffer.getInt(offset + 8);
+        try {
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            ByteBuffer pixels = buffer.duplicate();
+            pixels.position(offset + SLOT_HEADER_SIZE);
+            pixels.limit(offset + SLOT_HEADER_SIZE + bitmap.getByteCount());
+            bitmap.copyPixelsFromBuffer(pixels);
+            hitCount += 1;
+            return bitmap;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Unable to read icon " + key, e);
+            freeSlot(key, slot);
+            missCount += 1;
+            return null;
+        }
+    }
+
+    /**
+     * Store icon, replacing any icon with same key.
+     *
+     * @param key    key of icon
+     * @param bitmap icon
+     */
+    public synchronized void put(@NonNull String key, @NonNull Bitmap bitmap) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        if (keyBytes.length > MAX_KEY_LENGTH || !open()) {
+            return;
+        }
+
+        Bitmap pixels = toStorableBitmap(bitmap, iconSize);
+        if (pixels == null) {
+            return;
+        }
+
+        Integer slot = slotsByKey.get(key);
+        if (slot == null) {
+            slot = allocateSlot();
+            if (slot == null) {
+                return;
+            }
+        }
+
+        int offset = getSlotOffset(slot);
+        try {
+            // pixels first, the slot is used only once complete
+            buffer.putInt(offset, 0);
+            ByteBuffer slotPixels = buffer.duplicate();
+            slotPixels.position(offset + SLOT_HEADER_SIZE);
+            pixels.copyPixelsToBuffer(slotPixels);
+            buffer.putInt(offset + 4, pixels.getWidth());
+            buffer.putInt(offset + 8, pixels.getHeight());
+            buffer.putInt(offset + 12, keyBytes.length);
+            for (int i = 0; i < keyBytes.length; i += 1) {
+                buffer.put(offset + 16 + i, keyBytes[i]);
+            }
+            buffer.putInt(offset, SLOT_USED);
+            slotsByKey.put(key, slot);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Unable to store icon " + key, e);
+            freeSlot(key, slot);
+        }
+    }
+
+    /**
+     * Remove all icons and delete the file.
+     * The atlas can't be used anymore afterwards, a new atlas has to be created for the same file.
+     */
+    public synchronized void clear() {
+        close();
+        closed = true;
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete " + file.getAbsolutePath());
+        }
+    }
+
+    public synchronized void close() {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to close " + file.getAbsolutePath(), e);
+            }
+        }
+        randomAccessFile = null;
+        buffer = null;
+        slotsByKey.clear();
+        freeSlots.clear();
+        slotCount = 0;
+    }
+
+    /**
+     * @return size in bytes of the icons stored
+     */
+    public synchronized long getSize() {
+        return (long) slotsByKey.size() * slotSize;
+    }
+
+    /**
+     * @return max size in bytes of the icons stored
+     */
+    public long getMaxSize() {
+        return (long) maxSlotCount * slotSize;
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of icons replaced because the file reached its max size
+     */
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return free slot, after growing file or replacing least recently used icon if needed, null on error
+     */
+    @Nullable
+    private Integer allocateSlot() {
+        if (freeSlots.isEmpty() && slotCount < maxSlotCount) {
+            grow();
+        }
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.poll();
+        }
+        Iterator<Map.Entry<String, Integer>> eldest = slotsByKey.entrySet().iterator();
+        if (!eldest.hasNext()) {
+            return null;
+        }
+        Integer slot = eldest.next().getValue();
+        eldest.remove();
+        evictionCount += 1;
+        return slot;
+    }
+
+    private void freeSlot(@NonNull String key, int slot) {
+        slotsByKey.remove(key);
+        freeSlots.add(slot);
+    }
+
+    /**
+     * @param bitmap   icon
+     * @param iconSize max width and height of icons in pixels
+     * @return bitmap as ARGB_8888 pixels no larger than the icon size, null if it can't be stored
+     */
+    @Nullable
+    static Bitmap toStorableBitmap(@NonNull Bitmap bitmap, int iconSize) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        // bilinear filtering only uses 2x2 pixels, so don't scale down by more than half at once
+        while (Math.max(width, height) >= 2 * iconSize && Math.min(width, height) >= 2) {
+            width /= 2;
+            height /= 2;
+            bitmap = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        }
+        if (width > iconSize || height > iconSize) {
+            float scale = (float) iconSize / Math.max(width, height);
+            width = Math.max(1, Math.min(iconSize, Math.round(width * scale)));
+            height = Math.max(1, Math.min(iconSize, Math.round(height * scale)));
+            bitmap = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        }
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        if (bitmap == null || bitmap.getRowBytes() != width * 4) {
+            return null;
+        }
+        return bitmap;
+    }
+
+    private boolean hasKey(int offset, @NonNull byte[] keyBytes) {
+        if (buffer.getInt(offset) != SLOT_USED || buffer.getInt(offset + 12) != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyBytes.length; i += 1) {
+            if (buffer.get(offset + 16 + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getSlotOffset(int slot) {
+        return FILE_HEADER_SIZE + slot * slotSize;
+    }
+
+    private long getFileLength(int count) {
+        return FILE_HEADER_SIZE + (long) count * slotSize;
+    }
+
+    /**
+     * Open and map file if needed, reading the icons it contains.
+     *
+     * @return true if atlas can be used
+     */
+    private boolean open() {
+        if (buffer != null) {
+            return true;
+        }
+        if (failed || closed) {
+            return false;
+        }
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            int count = 0;
+            if (randomAccessFile.length() >= FILE_HEADER_SIZE
+                    && randomAccessFile.readInt() == MAGIC
+                    && randomAccessFile.readInt() == VERSION
+                    && randomAccessFile.readInt() == iconSize) {
+                count = randomAccessFile.readInt();
+            }
+            if (count <= 0 || count > maxSlotCount || randomAccessFile.length() < getFileLength(count)) {
+                // missing, outdated, damaged or too large file
+                count = Math.min(INITIAL_SLOT_COUNT, maxSlotCount);
+                randomAccessFile.setLength(0);
+            }
+            map(count);
+            readSlots();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to open " + file.getAbsolutePath(), e);
+            close();
+            failed = true;
+            return false;
+        }
+    }
+
+    private void map(int count) throws IOException {
+        long length = getFileLength(count);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Atlas too large: " + count + " icons");
+        }
+        randomAccessFile.setLength(length);
+        buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, iconSize);
+        buffer.putInt(12, count);
+        for (int slot = slotCount; slot < count; slot += 1) {
+            freeSlots.add(slot);
+        }
+        slotCount = count;
+    }
+
+    private void readSlots() {
+        slotsByKey.clear();
+        freeSlots.clear();
+        byte[] keyBytes = new byte[MAX_KEY_LENGTH];
+        for (int slot = 0; slot < slotCount; slot += 1) {
+            int offset = getSlotOffset(slot);
+            int width = buffer.getInt(offset + 4);
+            int height = buffer.getInt(offset + 8);
+            int keyLength = buffer.getInt(offset + 12);
+            if (buffer.getInt(offset) != SLOT_USED
+                    || width <= 0 || width > iconSize || height <= 0 || height > iconSize
+                    || keyLength <= 0 || keyLength > MAX_KEY_LENGTH) {
+                // never written, write was interrupted or damaged
+                freeSlots.add(slot);
+                continue;
+            }
+            for (int i = 0; i < keyLength; i += 1) {
+                keyBytes[i] = buffer.get(offset + 16 + i);
+            }
+            Integer previous = slotsByKey.put(new String(keyBytes, 0, keyLength, UTF_8), slot);
+            if (previous != null) {
+                freeSlots.add(previous);
+            }
+        }
+    }
+
+    /**
+     * Double the number of slots, up to the max
+     */
+    private void grow() {
+        try {
+            map(Math.min(slotCount * 2, maxSlotCount));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to grow " + file.getAbsolutePath(), e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package fr.neamar.kiss.icons;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+
+/**
+ * Icons cache with two tiers: least recently used bitmaps in memory, in front of an {@link IconAtlas} on disk.
+ * Memory is bounded by size in bytes, disk by number of icons. Both tiers count hits, misses and evictions.
+ * Thread safe.
+ */
+public class IconCache {
+    /**
+     * Part of the memory class of the app used by icons in memory
+     */
+    private static final int MEMORY_FRACTION = 8;
+    /**
+     * Max number of icons on disk, the file only grows with the icons stored.
+     * Every icon of 48dp takes 36 KiB at xhdpi, 81 KiB at xxhdpi and 145 KiB at xxxhdpi.
+     */
+    private static final int MAX_DISK_ICON_COUNT = 600;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final IconAtlas diskCache;
+    private final int iconSize;
+
+    /**
+     * @param context  context
+     * @param file     file of the disk cache
+     * @param iconSize max width and height of icons in memory and on disk, in pixels
+     */
+    public IconCache(@NonNull Context context, @NonNull File file, int iconSize) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memorySize = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_FRACTION;
+        memoryCache = new LruCache<String, Bitmap>(memorySize) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        diskCache = new IconAtlas(file, iconSize, MAX_DISK_ICON_COUNT);
+        this.iconSize = iconSize;
+    }
+
+    /**
+     * @param key key of icon
+     * @return bitmap of icon, from memory or disk, null if icon is not in cache
+     */
+    @Nullable
+    public Bitmap get(@NonNull String key) {
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap == null) {
+            bitmap = diskCache.get(key);
+            if (bitmap != null) {
+                memoryCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * @param key key of icon
+     * @return bitmap of icon if it is in memory, null otherwise
+     */
+    @Nullable
+    public Bitmap getFromMemory(@NonNull String key) {
+        return memoryCache.get(key);
+    }
+
+    /**
+     * Store icon in memory and on disk, replacing any icon with same key.
+     * Both tiers keep the same bitmap scaled down to the icon size, icons that can't be stored are not cached.
+     *
+     * @param key    key of icon
+     * @param bitmap icon, must not be modified afterwards
+     */
+    public void put(@NonNull String key, @NonNull Bitmap bitmap) {
+        Bitmap pixels = IconAtlas.toStorableBitmap(bitmap, iconSize);
+        if (pixels == null) {
+            return;
+        }
+        memoryCache.put(key, pixels);
+        diskCache.put(key, pixels);
+    }
+
+    /**
+     * Remove all icons from memory and disk
+     */
+    public void clear() {
+        memoryCache.evictAll();
+        diskCache.clear();
+    }
+
+    public int getMemoryHitCount() {
+        return memoryCache.hitCount();
+    }
+
+    public int getMemoryMissCount() {
+        return memoryCache.missCount();
+    }
+
+    public int getMemoryEvictionCount() {
+        return memoryCache.evictionCount();
+    }
+
+    public int getDiskHitCount() {
+        return diskCache.getHitCount();
+    }
+
+    public int getDiskMissCount() {
+        return diskCache.getMissCount();
+    }
+
+    public int getDiskEvictionCount() {
+        return diskCache.getEvictionCount();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "IconCache{memory=" + memoryCache.size() + "/" + memoryCache.maxSize() + " bytes"
+                + ", memoryHits=" + getMemoryHitCount()
+                + ", memoryMisses=" + getMemoryMissCount()
+                + ", memoryEvictions=" + getMemoryEvictionCount()
+                + ", disk=" + diskCache.getSize() + "/" + diskCache.getMaxSize() + " bytes"
+                + ", diskHits=" + getDiskHitCount()
+                + ", diskMisses=" + getDiskMissCount()
+                + ", diskEvictions=" + getDiskEvictionCount()
+                + "}";
+    }
+}
@@ -2,7 +2,6 @@ package fr.neamar.kiss.icons;
 
 import android.content.ComponentName;
 import android.content.Context;
-import android.content.pm.PackageManager;
 import android.graphics.drawable.Drawable;
 
 import androidx.annotation.ColorInt;
@@ -18,7 +17,7 @@ public interface IconPack<DrawableInfo> {
     @NonNull
     String getPackPackageName();
 
-    void load(PackageManager packageManager);
+    void load(@NonNull Context context);
 
     @Nullable
     Drawable getComponentDrawable(@NonNull Context ctx, @NonNull ComponentName componentName, @NonNull UserHandle userHandle);
@@ -0,0 +1,188 @@
+package fr.neamar.kiss.icons;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content of appfilter.xml of an icon pack, by names of drawables.
+ * <p>
+ * Parsing appfilter.xml of large icon packs takes seconds, so the index is stored in a compact binary
+ * format, with the version of the icon pack it was built from. Names are written once, components refer to them
+ * by position.
+ */
+class IconPackIndex {
+    private static final int MAGIC = 0x4b495049;
+    private static final int FORMAT_VERSION = 1;
+
+    final long packVersionCode;
+    final long packLastUpdateTime;
+    float scaleFactor = 1.0f;
+    @Nullable
+    String maskImage = null;
+    @Nullable
+    String frontImage = null;
+    final List<String> backImages = new ArrayList<>();
+    /**
+     * All drawables, including those without component
+     */
+    final Set<String> drawables = new LinkedHashSet<>();
+    final Map<String, Set<String>> drawablesByComponent = new LinkedHashMap<>();
+    /**
+     * Prefixes of calendar drawables, the day of month is appended to get the drawable
+     */
+    final Map<String, Set<String>> calendarPrefixesByComponent = new LinkedHashMap<>();
+
+    /**
+     * @param packVersionCode    version code of icon pack
+     * @param packLastUpdateTime last update time of icon pack
+     */
+    IconPackIndex(long packVersionCode, long packLastUpdateTime) {
+        this.packVersionCode = packVersionCode;
+        this.packLastUpdateTime = packLastUpdateTime;
+    }
+
+    void addDrawable(@NonNull String drawable, @Nullable String component) {
+        drawables.add(drawable);
+        if (component != null) {
+            add(drawablesByComponent, component, drawable);
+        }
+    }
+
+    void addCalendar(@NonNull String prefix, @NonNull String component) {
+        add(calendarPrefixesByComponent, component, prefix);
+    }
+
+    private static void add(Map<String, Set<String>> valuesByKey, String key, String value) {
+        Set<String> values = valuesByKey.get(key);
+        if (values == null) {
+            valuesByKey.put(key, values = new LinkedHashSet<>(1));
+        }
+        values.add(value);
+    }
+
+    void write(@NonNull DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(packVersionCode);
+        out.writeLong(packLastUpdateTime);
+        out.writeFloat(scaleFactor);
+        writeNullableString(out, maskImage);
+        writeNullableString(out, frontImage);
+        writeStrings(out, backImages);
+
+        Map<String, Integer> drawablePositions = writeNames(out, drawables);
+        Set<String> calendarPrefixes = new LinkedHashSet<>();
+        for (Set<String> prefixes : calendarPrefixesByComponent.values()) {
+            calendarPrefixes.addAll(prefixes);
+        }
+        Map<String, Integer> prefixPositions = writeNames(out, calendarPrefixes);
+
+        Set<String> components = new LinkedHashSet<>(drawablesByComponent.keySet());
+        components.addAll(calendarPrefixesByComponent.keySet());
+        out.writeInt(components.size());
+        for (String component : components) {
+            out.writeUTF(component);
+            writePositions(out, drawablesByComponent.get(component), drawablePositions);
+            writePositions(out, calendarPrefixesByComponent.get(component), prefixPositions);
+        }
+    }
+
+    /**
+     * @param packVersionCode    current version code of icon pack
+     * @param packLastUpdateTime current last update time of icon pack
+     * @return index, null if it was built from another version of icon pack or with another format
+     */
+    @Nullable
+    static IconPackIndex read(@NonNull DataInput in, long packVersionCode, long packLastUpdateTime) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                || in.readLong() != packVersionCode || in.readLong() != packLastUpdateTime) {
+            return null;
+        }
+        IconPackIndex index = new IconPackIndex(packVersionCode, packLastUpdateTime);
+        index.scaleFactor = in.readFloat();
+        index.maskImage = readNullableString(in);
+        index.frontImage = readNullableString(in);
+        index.backImages.addAll(readStrings(in));
+
+        List<String> drawables = readStrings(in);
+        index.drawables.addAll(drawables);
+        List<String> calendarPrefixes = readStrings(in);
+
+        int componentCount = in.readInt();
+        for (int i = 0; i < componentCount; i += 1) {
+            String component = in.readUTF();
+            int drawableCount = in.readInt();
+            for (int j = 0; j < drawableCount; j += 1) {
+                add(index.drawablesByComponent, component, drawables.get(in.readInt()));
+            }
+            int calendarCount = in.readInt();
+            for (int j = 0; j < calendarCount; j += 1) {
+                add(index.calendarPrefixesByComponent, component, calendarPrefixes.get(in.readInt()));
+            }
+        }
+        return index;
+    }
+
+    private static Map<String, Integer> writeNames(DataOutput out, Set<String> names) throws IOException {
+        Map<String, Integer> positions = new HashMap<>(names.size());
+        out.writeInt(names.size());
+        for (String name : names) {
+            positions.put(name, positions.size());
+            out.writeUTF(name);
+        }
+        return positions;
+    }
+
+    private static void writePositions(DataOutput out, @Nullable Set<String> names, Map<String, Integer> positions) throws IOException {
+        if (names == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeInt(positions.get(name));
+        }
+    }
+
+    private static void writeStrings(DataOutput out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid count " + count);
+        }
+        List<String> strings = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i += 1) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    private static void writeNullableString(DataOutput out, @Nullable String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
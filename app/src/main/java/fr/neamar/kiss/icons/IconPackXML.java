@@ -2,6 +2,7 @@ package fr.neamar.kiss.icons;
 
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
@@ -13,6 +14,7 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -25,8 +27,15 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -74,24 +83,24 @@ public class IconPackXML implements IconPack<IconPackXML.DrawableInfo> {
         return loaded;
     }
 
-    public void load(PackageManager packageManager) {
+    public void load(@NonNull Context context) {
         if (!loaded) {
             synchronized (this) {
                 if (!loaded) {
                     try {
-                        packResources = packageManager.getResourcesForApplication(iconPackPackageName);
+                        packResources = context.getPackageManager().getResourcesForApplication(iconPackPackageName);
                     } catch (PackageManager.NameNotFoundException e) {
                         Log.e(TAG, "Unable to get icon pack resources: " + iconPackPackageName, e);
                     }
-                    parseAppFilterXML();
+                    loadAppFilter(context);
                     loaded = true;
                 }
             }
         }
     }
 
-    public void loadDrawables(PackageManager packageManager) {
-        load(packageManager);
+    public void loadDrawables(@NonNull Context context) {
+        load(context);
         parseDrawableXML();
     }
 
@@ -305,13 +314,145 @@ public class IconPackXML implements IconPack<IconPackXML.DrawableInfo> {
         return packResources.getIdentifier(name, defType, iconPackPackageName);
     }
 
-    private void parseAppFilterXML() {
+    /**
+     * Load content of appfilter.xml, from index of current version of icon pack if available
+     */
+    private void loadAppFilter(@NonNull Context context) {
         if (packResources == null)
             return;
 
         long start = System.currentTimeMillis();
 
+        long versionCode = 0;
+        long lastUpdateTime = 0;
+        try {
+            PackageInfo packageInfo = context.getPackageManager().getPackageInfo(iconPackPackageName, 0);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                versionCode = packageInfo.getLongVersionCode();
+            } else {
+                versionCode = packageInfo.versionCode;
+            }
+            lastUpdateTime = packageInfo.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.e(TAG, "Unable to get icon pack version: " + iconPackPackageName, e);
+        }
+
+        File indexFile = getIndexFile(context);
+        IconPackIndex index = readIndex(indexFile, versionCode, lastUpdateTime);
+        if (index == null) {
+            index = new IconPackIndex(versionCode, lastUpdateTime);
+            if (parseAppFilterXML(index)) {
+                writeIndex(indexFile, index);
+            }
+        }
+        applyIndex(index);
+
+        long end = System.currentTimeMillis();
+        Log.i(TAG, (end - start) + " milliseconds to load appfilter.xml");
+    }
+
+    /**
+     * Index of appfilter.xml is stored in {cacheDir}/icon_packs/{icon_pack_package_name}.idx
+     */
+    @NonNull
+    private File getIndexFile(@NonNull Context context) {
+        return new File(new File(context.getCacheDir(), "icon_packs"), iconPackPackageName + ".idx");
+    }
+
+    @Nullable
+    private IconPackIndex readIndex(@NonNull File indexFile, long versionCode, long lastUpdateTime) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {
+            // read whole index at once, it is parsed from memory
+            byte[] bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+            return IconPackIndex.read(new DataInputStream(new ByteArrayInputStream(bytes)), versionCode, lastUpdateTime);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to read index of " + iconPackPackageName, e);
+            return null;
+        }
+    }
+
+    private void writeIndex(@NonNull File indexFile, @NonNull IconPackIndex index) {
+        File dir = indexFile.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Unable to create " + dir.getPath());
+            return;
+        }
+        // write to temporary file first, so that an index is never read partially
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            index.write(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write index of " + iconPackPackageName, e);
+            if (!tempFile.delete()) {
+                Log.w(TAG, "Unable to delete " + tempFile.getPath());
+            }
+            return;
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            Log.w(TAG, "Unable to rename " + tempFile.getPath());
+        }
+    }
+
+    private void applyIndex(@NonNull IconPackIndex index) {
+        scaleFactor = index.scaleFactor;
+        for (String drawableName : index.backImages) {
+            Drawable drawable = getDrawable(new SimpleDrawable(drawableName));
+            if (drawable != null) {
+                backImages.add(drawable);
+            }
+        }
+        if (index.maskImage != null) {
+            maskImage = getDrawable(new SimpleDrawable(index.maskImage));
+        }
+        if (index.frontImage != null) {
+            frontImage = getDrawable(new SimpleDrawable(index.frontImage));
+        }
+
+        for (String drawableName : index.drawables) {
+            if (!drawableList.containsKey(drawableName)) {
+                drawableList.put(drawableName, new SimpleDrawable(drawableName));
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : index.drawablesByComponent.entrySet()) {
+            Set<DrawableInfo> infoSet = getDrawablesForComponent(entry.getKey());
+            for (String drawableName : entry.getValue()) {
+                infoSet.add(drawableList.get(drawableName));
+            }
+        }
+
         Map<String, CalendarDrawable> calendarDrawablesByPrefix = new HashMap<>(0);
+        for (Map.Entry<String, Set<String>> entry : index.calendarPrefixesByComponent.entrySet()) {
+            Set<DrawableInfo> infoSet = getDrawablesForComponent(entry.getKey());
+            for (String prefix : entry.getValue()) {
+                CalendarDrawable calendarDrawable = calendarDrawablesByPrefix.get(prefix);
+                if (calendarDrawable == null) {
+                    calendarDrawable = new CalendarDrawable(prefix);
+                    calendarDrawablesByPrefix.put(prefix, calendarDrawable);
+                }
+                infoSet.add(calendarDrawable);
+            }
+        }
+    }
+
+    @NonNull
+    private Set<DrawableInfo> getDrawablesForComponent(@NonNull String componentName) {
+        Set<DrawableInfo> infoSet = drawablesByComponent.get(componentName);
+        if (infoSet == null)
+            drawablesByComponent.put(componentName, infoSet = new HashSet<>(1));
+        return infoSet;
+    }
+
+    /**
+     * @param index index to add content of appfilter.xml to
+     * @return true if appfilter.xml was parsed without error
+     */
+    private boolean parseAppFilterXML(@NonNull IconPackIndex index) {
+        long start = System.currentTimeMillis();
+
         try {
             XmlPullParser xpp = findAppFilterXml();
             if (xpp != null) {
@@ -322,32 +463,20 @@ public class IconPackXML implements IconPack<IconPackXML.DrawableInfo> {
                         if (xpp.getName().equals("iconback")) {
                             for (int i = 0; i < xpp.getAttributeCount(); i++) {
                                 if (xpp.getAttributeName(i).startsWith("img")) {
-                                    String drawableName = xpp.getAttributeValue(i);
-                                    Drawable drawable = getDrawable(new SimpleDrawable(drawableName));
-                                    if (drawable != null) {
-                                        backImages.add(drawable);
-                                    }
+                                    index.backImages.add(xpp.getAttributeValue(i));
                                 }
                             }
                         }
                         //parse <iconmask> xml tags used as mask of generated icons
                         else if (xpp.getName().equals("iconmask")) {
                             if (xpp.getAttributeCount() > 0 && xpp.getAttributeName(0).equals("img1")) {
-                                String drawableName = xpp.getAttributeValue(0);
-                                Drawable drawable = getDrawable(new SimpleDrawable(drawableName));
-                                if (drawable != null) {
-                                    maskImage = drawable;
-                                }
+                                index.maskImage = xpp.getAttributeValue(0);
                             }
                         }
                         //parse <iconupon> xml tags used as front image of generated icons
                         else if (xpp.getName().equals("iconupon")) {
                             if (xpp.getAttributeCount() > 0 && xpp.getAttributeName(0).equals("img1")) {
-                                String drawableName = xpp.getAttributeValue(0);
-                                Drawable drawable = getDrawable(new SimpleDrawable(drawableName));
-                                if (drawable != null) {
-                                    frontImage = drawable;
-                                }
+                                index.frontImage = xpp.getAttributeValue(0);
                             }
                         }
                         //parse <scale> xml tags used as scale factor of original bitmap icon
@@ -358,7 +487,7 @@ public class IconPackXML implements IconPack<IconPackXML.DrawableInfo> {
                             }
                             if (factor != null) {
                                 try {
-                                    scaleFactor = Float.parseFloat(factor);
+                                    index.scaleFactor = Float.parseFloat(factor);
                                 } catch (NumberFormatException ignored) {
                                 }
                             }
@@ -380,19 +509,10 @@ public class IconPackXML implements IconPack<IconPackXML.DrawableInfo> {
                                 eventType = xpp.next();
                                 continue;
                             }
-                            if (!drawableList.containsKey(drawableName)) {
-                                DrawableInfo drawableInfo = new SimpleDrawable(drawableName);
-                                drawableList.put(drawableName, drawableInfo);
-                            }
-
-                            if (componentName != null) {
-                                Set<DrawableInfo> infoSet = drawablesByComponent.get(componentName);
-                                if (infoSet == null)
-                                    drawablesByComponent.put(componentName, infoSet = new HashSet<>(1));
-                                infoSet.add(drawableList.get(drawableName));
-                            } else {
+                            if (componentName == null) {
                                 Log.w(TAG, "Drawable `" + drawableName + "` for component `" + componentName + "` not found");
                             }
+                            index.addDrawable(drawableName, componentName);
                         }
                         //parse <calendar>
                         else if (xpp.getName().equals("calendar")) {
@@ -408,16 +528,7 @@ public class IconPackXML implements IconPack<IconPackXML.DrawableInfo> {
                             }
 
                             if (componentName != null && prefix != null) {
-                                if (!calendarDrawablesByPrefix.containsKey(prefix)) {
-                                    CalendarDrawable calendarDrawable = new CalendarDrawable(prefix);
-                                    calendarDrawablesByPrefix.put(prefix, calendarDrawable);
-                                }
-
-                                CalendarDrawable drawableInfo = calendarDrawablesByPrefix.get(prefix);
-                                Set<DrawableInfo> infoSet = drawablesByComponent.get(componentName);
-                                if (infoSet == null)
-                                    drawablesByComponent.put(componentName, infoSet = new HashSet<>(1));
-                                infoSet.add(drawableInfo);
+                                index.addCalendar(prefix, componentName);
                             }
                         }
                     }
@@ -426,10 +537,12 @@ public class IconPackXML implements IconPack<IconPackXML.DrawableInfo> {
             }
         } catch (IOException | XmlPullParserException e) {
             Log.e(TAG, "Error parsing appfilter.xml ", e);
+            return false;
         }
 
         long end = System.currentTimeMillis();
         Log.i(TAG, (end - start) + " milliseconds to parse appfilter.xml");
+        return true;
     }
 
     private XmlPullParser findAppFilterXml() throws XmlPullParserException {
@@ -2,7 +2,6 @@ package fr.neamar.kiss.icons;
 
 import android.content.ComponentName;
 import android.content.Context;
-import android.content.pm.PackageManager;
 import android.graphics.drawable.Drawable;
 
 import androidx.annotation.ColorInt;
@@ -38,7 +37,7 @@ public class SystemIconPack implements IconPack<Void> {
     }
 
     @Override
-    public void load(PackageManager packageManager) {
+    public void load(@NonNull Context context) {
     }
 
     @NonNull
@@ -0,0 +1,71 @@
+package fr.neamar.kiss.loader;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.UserManager;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import fr.neamar.kiss.pojo.AppPojo;
+import fr.neamar.kiss.utils.UserHandle;
+
+public class AppPojoSnapshot extends PojoSnapshot<AppPojo> {
+    private static final int VERSION = 1;
+
+    public AppPojoSnapshot() {
+        super("apps", VERSION);
+    }
+
+    @Override
+    void writePojo(DataOutputStream out, AppPojo pojo) throws IOException {
+        out.writeUTF(pojo.id);
+        out.writeUTF(pojo.packageName);
+        out.writeUTF(pojo.activityName);
+        out.writeLong(pojo.userHandle.getSerial());
+        out.writeBoolean(pojo.isExcluded());
+        out.writeBoolean(pojo.isExcludedFromHistory());
+        out.writeBoolean(pojo.isExcludedShortcuts());
+        out.writeBoolean(pojo.isDisabled());
+        out.writeLong(pojo.getCustomIconId());
+        writeName(out, pojo);
+        writeString(out, pojo.getTags());
+    }
+
+    @Override
+    AppPojo readPojo(Context context, DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String packageName = in.readUTF();
+        String activityName = in.readUTF();
+        long serial = in.readLong();
+        boolean excluded = in.readBoolean();
+        boolean excludedFromHistory = in.readBoolean();
+        boolean excludedShortcuts = in.readBoolean();
+        boolean disabled = in.readBoolean();
+        long customIconId = in.readLong();
+
+        UserHandle userHandle = getUserHandle(context, serial);
+        AppPojo app = new AppPojo(id, packageName, activityName, userHandle != null ? userHandle : new UserHandle(), excluded, excludedFromHistory, excludedShortcuts, disabled);
+        app.setCustomIconId(customIconId);
+        readName(in, app);
+        app.setTags(readString(in));
+
+        // profile was removed since snapshot was written
+        return userHandle != null ? app : null;
+    }
+
+    private static UserHandle getUserHandle(Context context, long serial) {
+        if (serial == 0) {
+            return new UserHandle();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            UserManager manager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+            android.os.UserHandle user = manager.getUserForSerialNumber(serial);
+            if (user != null) {
+                return new UserHandle(serial, user);
+            }
+        }
+        return null;
+    }
+}
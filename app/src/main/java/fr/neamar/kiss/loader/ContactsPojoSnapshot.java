@@ -0,0 +1,68 @@
+package fr.neamar.kiss.loader;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import fr.neamar.kiss.pojo.ContactData;
+import fr.neamar.kiss.pojo.ContactsPojo;
+
+public class ContactsPojoSnapshot extends PojoSnapshot<ContactsPojo> {
+    private static final int VERSION = 2;
+
+    public ContactsPojoSnapshot() {
+        super("contacts", VERSION);
+    }
+
+    @Override
+    void writePojo(DataOutputStream out, ContactsPojo pojo) throws IOException {
+        out.writeUTF(pojo.id);
+        out.writeLong(pojo.contactId);
+        writeString(out, pojo.lookupKey);
+        writeString(out, pojo.icon != null ? pojo.icon.toString() : null);
+        out.writeBoolean(pojo.primary);
+        out.writeBoolean(pojo.starred);
+        writeName(out, pojo);
+        writeNormalized(out, pojo.normalizedNameAlternative);
+        writeNormalized(out, pojo.normalizedPhoneticName);
+        writeString(out, pojo.getNickname());
+        writeString(out, pojo.phone);
+        out.writeBoolean(pojo.isHomeNumber());
+
+        ContactData contactData = pojo.getContactData();
+        out.writeBoolean(contactData != null);
+        if (contactData != null) {
+            out.writeUTF(contactData.getMimeType());
+            out.writeLong(contactData.getId());
+            writeString(out, contactData.getIdentifier());
+        }
+    }
+
+    @Override
+    ContactsPojo readPojo(Context context, DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        long contactId = in.readLong();
+        String lookupKey = readString(in);
+        String icon = readString(in);
+        boolean primary = in.readBoolean();
+        boolean starred = in.readBoolean();
+
+        ContactsPojo contact = new ContactsPojo(id, contactId, lookupKey, icon != null ? Uri.parse(icon) : null, primary, starred);
+        readName(in, contact);
+        contact.normalizedNameAlternative = readNormalized(in);
+        contact.normalizedPhoneticName = readNormalized(in);
+        contact.setNickname(readString(in));
+        String phone = readString(in);
+        contact.setPhone(phone, in.readBoolean());
+
+        if (in.readBoolean()) {
+            ContactData contactData = new ContactData(in.readUTF(), in.readLong());
+            contactData.setIdentifier(readString(in));
+            contact.setIm(contactData);
+        }
+        return contact;
+    }
+}
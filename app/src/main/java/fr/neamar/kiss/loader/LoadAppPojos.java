@@ -10,8 +10,14 @@ import android.content.pm.ResolveInfo;
 import android.os.Build;
 import android.os.UserManager;
 import android.util.Log;
+import android.util.Pair;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -19,7 +25,6 @@ import java.util.Set;
 import fr.neamar.kiss.KissApplication;
 import fr.neamar.kiss.TagsHandler;
 import fr.neamar.kiss.db.AppRecord;
-import fr.neamar.kiss.db.DBHelper;
 import fr.neamar.kiss.pojo.AppPojo;
 import fr.neamar.kiss.utils.PackageManagerUtils;
 import fr.neamar.kiss.utils.UserHandle;
@@ -29,9 +34,31 @@ public class LoadAppPojos extends LoadPojos<AppPojo> {
     private static final String TAG = LoadAppPojos.class.getSimpleName();
     private final TagsHandler tagsHandler;
 
+    /**
+     * Apps of previous load, null to load all apps
+     */
+    private final List<AppPojo> previousApps;
+    /**
+     * Packages to load again, with the user they were changed for
+     */
+    private final Collection<Pair<String, UserHandle>> changedPackages;
+
     public LoadAppPojos(Context context) {
+        this(context, null, null);
+    }
+
+    /**
+     * Only load apps of given packages again, all other apps are taken from previous load.
+     *
+     * @param context         android context
+     * @param previousApps    apps of previous load
+     * @param changedPackages names of the packages to load again, with the user they were changed for
+     */
+    public LoadAppPojos(Context context, List<AppPojo> previousApps, Collection<Pair<String, UserHandle>> changedPackages) {
         super(context, "app://");
         tagsHandler = KissApplication.getApplication(context).getDataHandler().getTagsHandler();
+        this.previousApps = previousApps;
+        this.changedPackages = changedPackages;
     }
 
     @Override
@@ -53,37 +80,31 @@ public class LoadAppPojos extends LoadPojos<AppPojo> {
             UserManager manager = (UserManager) ctx.getSystemService(Context.USER_SERVICE);
             LauncherApps launcherApps = (LauncherApps) ctx.getSystemService(Context.LAUNCHER_APPS_SERVICE);
 
-            // Handle multi-profile support introduced in Android 5 (#542)
-            for (android.os.UserHandle profile : manager.getUserProfiles()) {
-                UserHandle user = new UserHandle(manager.getSerialNumberForUser(profile), profile);
-                for (LauncherActivityInfo activityInfo : launcherApps.getActivityList(null, profile)) {
-                    if (isCancelled()) {
-                        break;
-                    }
-                    ApplicationInfo appInfo = activityInfo.getApplicationInfo();
-                    boolean disabled = PackageManagerUtils.isAppSuspended(appInfo) || isQuietModeEnabled(manager, profile);
-                    final AppPojo app = createPojo(user, appInfo.packageName, activityInfo.getName(), activityInfo.getLabel(), disabled, excludedAppList, excludedFromHistoryAppList, excludedShortcutsAppList);
-                    apps.add(app);
+            if (changedPackages == null) {
+                // Handle multi-profile support introduced in Android 5 (#542)
+                for (android.os.UserHandle profile : manager.getUserProfiles()) {
+                    UserHandle user = new UserHandle(manager.getSerialNumberForUser(profile), profile);
+                    addApps(apps, launcherApps.getActivityList(null, profile), manager, user, excludedAppList, excludedFromHistoryAppList, excludedShortcutsAppList);
+                }
+            } else {
+                for (Pair<String, UserHandle> changedPackage : changedPackages) {
+                    UserHandle user = changedPackage.second;
+                    addApps(apps, launcherApps.getActivityList(changedPackage.first, user.getRealHandle()), manager, user, excludedAppList, excludedFromHistoryAppList, excludedShortcutsAppList);
                 }
             }
         } else {
             PackageManager manager = ctx.getPackageManager();
 
-            Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
-            mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
-
-            for (ResolveInfo info : manager.queryIntentActivities(mainIntent, 0)) {
-                if (isCancelled()) {
-                    break;
+            if (changedPackages == null) {
+                addApps(apps, manager, null, excludedAppList, excludedFromHistoryAppList, excludedShortcutsAppList);
+            } else {
+                for (Pair<String, UserHandle> changedPackage : changedPackages) {
+                    addApps(apps, manager, changedPackage.first, excludedAppList, excludedFromHistoryAppList, excludedShortcutsAppList);
                 }
-                ApplicationInfo appInfo = info.activityInfo.applicationInfo;
-                boolean disabled = PackageManagerUtils.isAppSuspended(appInfo);
-                final AppPojo app = createPojo(new UserHandle(), appInfo.packageName, info.activityInfo.name, info.loadLabel(manager), disabled, excludedAppList, excludedFromHistoryAppList, excludedShortcutsAppList);
-                apps.add(app);
             }
         }
 
-        Map<String, AppRecord> customApps = DBHelper.getCustomAppData(ctx);
+        Map<String, AppRecord> customApps = KissApplication.getApplication(ctx).getDataHandler().getCustomAppData();
         for (AppPojo app : apps) {
             AppRecord customApp = customApps.get(app.getComponentName());
             if (customApp == null)
@@ -94,12 +115,74 @@ public class LoadAppPojos extends LoadPojos<AppPojo> {
                 app.setCustomIconId(customApp.dbId);
         }
 
+        if (changedPackages != null) {
+            apps = mergeWithPreviousApps(apps);
+        }
+
         long end = System.currentTimeMillis();
         Log.i(TAG, (end - start) + " milliseconds to list apps");
 
         return apps;
     }
 
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private void addApps(List<AppPojo> apps, List<LauncherActivityInfo> activityInfos, UserManager manager, UserHandle user, Set<String> excludedAppList, Set<String> excludedFromHistoryAppList, Set<String> excludedShortcutsAppList) {
+        for (LauncherActivityInfo activityInfo : activityInfos) {
+            if (isCancelled()) {
+                break;
+            }
+            ApplicationInfo appInfo = activityInfo.getApplicationInfo();
+            boolean disabled = PackageManagerUtils.isAppSuspended(appInfo) || isQuietModeEnabled(manager, user.getRealHandle());
+            final AppPojo app = createPojo(user, appInfo.packageName, activityInfo.getName(), activityInfo.getLabel(), disabled, excludedAppList, excludedFromHistoryAppList, excludedShortcutsAppList);
+            apps.add(app);
+        }
+    }
+
+    /**
+     * Add launcher activities of current user
+     *
+     * @param packageName only add activities of this package, null for all packages
+     */
+    private void addApps(List<AppPojo> apps, PackageManager manager, @Nullable String packageName, Set<String> excludedAppList, Set<String> excludedFromHistoryAppList, Set<String> excludedShortcutsAppList) {
+        Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+        mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+        mainIntent.setPackage(packageName);
+
+        for (ResolveInfo info : manager.queryIntentActivities(mainIntent, 0)) {
+            if (isCancelled()) {
+                break;
+            }
+            ApplicationInfo appInfo = info.activityInfo.applicationInfo;
+            boolean disabled = PackageManagerUtils.isAppSuspended(appInfo);
+            final AppPojo app = createPojo(new UserHandle(), appInfo.packageName, info.activityInfo.name, info.loadLabel(manager), disabled, excludedAppList, excludedFromHistoryAppList, excludedShortcutsAppList);
+            apps.add(app);
+        }
+    }
+
+    /**
+     * @param changedApps apps loaded for changed packages
+     * @return apps of previous load not belonging to any changed package, and changed apps
+     */
+    private List<AppPojo> mergeWithPreviousApps(List<AppPojo> changedApps) {
+        Set<String> changedPackageKeys = new HashSet<>(changedPackages.size());
+        for (Pair<String, UserHandle> changedPackage : changedPackages) {
+            changedPackageKeys.add(getPackageKey(changedPackage.first, changedPackage.second));
+        }
+
+        List<AppPojo> apps = new ArrayList<>(previousApps.size() + changedApps.size());
+        for (AppPojo app : previousApps) {
+            if (!changedPackageKeys.contains(getPackageKey(app.packageName, app.userHandle))) {
+                apps.add(app);
+            }
+        }
+        apps.addAll(changedApps);
+        return apps;
+    }
+
+    private static String getPackageKey(String packageName, UserHandle user) {
+        return user.addUserSuffixToString(packageName, '#');
+    }
+
     private boolean isQuietModeEnabled(UserManager manager, android.os.UserHandle profile) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             return manager.isQuietModeEnabled(profile);
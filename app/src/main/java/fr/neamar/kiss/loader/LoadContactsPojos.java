@@ -4,11 +4,14 @@ import android.content.ContentUris;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
 import android.provider.ContactsContract;
 import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -29,8 +32,36 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
 
     private static final String TAG = LoadContactsPojos.class.getSimpleName();
 
+    /**
+     * Do not patch the previous contacts if more contacts changed, a full load is faster
+     */
+    private static final int MAX_CHANGED_CONTACTS = 500;
+
+    /**
+     * Contacts of previous load, null to load all contacts
+     */
+    private final List<ContactsPojo> previousContacts;
+    /**
+     * Only contacts updated or deleted after this time are loaded again, see {@link #LoadContactsPojos(Context, List, long)}
+     */
+    private final long changedSince;
+
     public LoadContactsPojos(Context context) {
+        this(context, null, 0);
+    }
+
+    /**
+     * Load only contacts that changed since previous load, and take all other contacts from previous load.
+     * Falls back to loading all contacts if changes can't be tracked or if too many contacts changed.
+     *
+     * @param context          android context
+     * @param previousContacts contacts of previous load
+     * @param changedSince     start time of previous load
+     */
+    public LoadContactsPojos(Context context, List<ContactsPojo> previousContacts, long changedSince) {
         super(context, "contact://");
+        this.previousContacts = previousContacts;
+        this.changedSince = changedSince;
     }
 
     @Override
@@ -54,7 +85,83 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
             return contacts;
         }
 
+        if (previousContacts != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            List<ContactsPojo> changedContacts = loadChangedContacts(ctx, mimeTypes);
+            if (changedContacts != null) {
+                long end = System.currentTimeMillis();
+                Log.i(TAG, (end - start) + " milliseconds to update contacts, " + changedContacts.size() + " contacts");
+                return changedContacts;
+            }
+        }
+
         // Query basic contact information and keep in memory to prevent duplicates
+        Map<String, BasicContact> basicContacts = getBasicContacts(ctx, null, null);
+        contacts.addAll(createContacts(ctx, mimeTypes, basicContacts, null));
+
+        long end = System.currentTimeMillis();
+        Log.i(TAG, (end - start) + " milliseconds to list all " + contacts.size() + " contacts");
+        return contacts;
+    }
+
+    /**
+     * Patch previous contacts with contacts updated or deleted since last load.
+     *
+     * @return all contacts, or null if a full load is needed
+     */
+    @Nullable
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private List<ContactsPojo> loadChangedContacts(@NonNull Context ctx, Set<String> mimeTypes) {
+        String[] changedSinceArgs = new String[]{String.valueOf(changedSince)};
+
+        Set<Long> deletedContactIds = new HashSet<>();
+        try (Cursor deletedCursor = ctx.getContentResolver().query(
+                ContactsContract.DeletedContacts.CONTENT_URI,
+                new String[]{ContactsContract.DeletedContacts.CONTACT_ID},
+                ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + " >= ?",
+                changedSinceArgs, null)) {
+            if (deletedCursor != null) {
+                int contactIdIndex = deletedCursor.getColumnIndex(ContactsContract.DeletedContacts.CONTACT_ID);
+                while (deletedCursor.moveToNext() && !isCancelled()) {
+                    deletedContactIds.add(deletedCursor.getLong(contactIdIndex));
+                }
+            }
+        }
+
+        Map<String, BasicContact> basicContacts = getBasicContacts(ctx,
+                ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " >= ?",
+                changedSinceArgs);
+
+        if (deletedContactIds.size() + basicContacts.size() > MAX_CHANGED_CONTACTS) {
+            Log.i(TAG, "Too many changed contacts, loading all contacts");
+            return null;
+        }
+
+        Set<Long> changedContactIds = new HashSet<>(basicContacts.size());
+        for (BasicContact basicContact : basicContacts.values()) {
+            changedContactIds.add(basicContact.getContactId());
+        }
+        Log.i(TAG, changedContactIds.size() + " contacts updated, " + deletedContactIds.size() + " contacts deleted");
+
+        List<ContactsPojo> contacts = new ArrayList<>(previousContacts.size() + changedContactIds.size());
+        for (ContactsPojo contact : previousContacts) {
+            if (!changedContactIds.contains(contact.contactId) && !deletedContactIds.contains(contact.contactId)) {
+                contacts.add(contact);
+            }
+        }
+        if (!changedContactIds.isEmpty()) {
+            contacts.addAll(createContacts(ctx, mimeTypes, basicContacts, changedContactIds));
+        }
+        return contacts;
+    }
+
+    /**
+     * Query basic contact information
+     *
+     * @param selection     filter of contacts to query, null for all contacts
+     * @param selectionArgs arguments of selection
+     * @return basic contacts by lookup key
+     */
+    private Map<String, BasicContact> getBasicContacts(@NonNull Context ctx, @Nullable String selection, @Nullable String[] selectionArgs) {
         Map<String, BasicContact> basicContacts = new HashMap<>();
         long startBasicContacts = System.currentTimeMillis();
         try (Cursor contactCursor = ctx.getContentResolver().query(
@@ -65,7 +172,7 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
                         ContactsContract.Contacts.DISPLAY_NAME_ALTERNATIVE,
                         ContactsContract.Contacts.PHONETIC_NAME,
                         ContactsContract.Contacts.PHOTO_ID,
-                        ContactsContract.Contacts.PHOTO_URI}, null, null, null)) {
+                        ContactsContract.Contacts.PHOTO_URI}, selection, selectionArgs, null)) {
             if (contactCursor != null) {
                 if (contactCursor.getCount() > 0) {
                     int lookupIndex = contactCursor.getColumnIndex(ContactsContract.Contacts.LOOKUP_KEY);
@@ -93,6 +200,19 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
         long endBasicContacts = System.currentTimeMillis();
         Log.i(TAG, (endBasicContacts - startBasicContacts) + " milliseconds to load " + basicContacts.size() + " basic contacts");
 
+        return basicContacts;
+    }
+
+    /**
+     * Create contacts for all active mime types
+     *
+     * @param basicContacts basic contact information by lookup key
+     * @param contactIds    ids of contacts to create, null for all contacts
+     * @return created contacts
+     */
+    private List<ContactsPojo> createContacts(@NonNull Context ctx, Set<String> mimeTypes, Map<String, BasicContact> basicContacts, @Nullable Set<Long> contactIds) {
+        List<ContactsPojo> contacts = new ArrayList<>();
+
         // Query raw contact information and keep in memory to prevent duplicates
         Map<Long, BasicRawContact> basicRawContacts = new HashMap<>();
         long startRawContacts = System.currentTimeMillis();
@@ -100,7 +220,8 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
                 ContactsContract.RawContacts.CONTENT_URI,
                 new String[]{ContactsContract.RawContacts._ID,
                         ContactsContract.RawContacts.ACCOUNT_TYPE,
-                        ContactsContract.RawContacts.STARRED}, null, null, null)) {
+                        ContactsContract.RawContacts.STARRED},
+                restrictToContacts(null, ContactsContract.RawContacts.CONTACT_ID, contactIds), null, null)) {
             if (rawContactCursor != null) {
                 if (rawContactCursor.getCount() > 0) {
                     int rawContactIdIndex = rawContactCursor.getColumnIndex(ContactsContract.RawContacts._ID);
@@ -125,7 +246,7 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
                 new String[]{
                         ContactsContract.CommonDataKinds.Nickname.NAME,
                         ContactsContract.Data.LOOKUP_KEY},
-                ContactsContract.Data.MIMETYPE + "= ?",
+                restrictToContacts(ContactsContract.Data.MIMETYPE + "= ?", ContactsContract.Data.CONTACT_ID, contactIds),
                 new String[]{ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE},
                 null)) {
             if (nickCursor != null) {
@@ -153,20 +274,45 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
         for (String mimeType : mimeTypes) {
             long startMimeType = System.currentTimeMillis();
             if (ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE.equals(mimeType)) {
-                contacts.addAll(createPhoneContacts(ctx, basicContacts, basicRawContacts));
+                contacts.addAll(createPhoneContacts(ctx, basicContacts, basicRawContacts, contactIds));
             } else {
-                contacts.addAll(createGenericContacts(ctx, mimeType, basicContacts, basicRawContacts));
+                contacts.addAll(createGenericContacts(ctx, mimeType, basicContacts, basicRawContacts, contactIds));
             }
             long endMimeType = System.currentTimeMillis();
             Log.i(TAG, (endMimeType - startMimeType) + " milliseconds to list contacts for " + mimeType);
         }
 
-        long end = System.currentTimeMillis();
-        Log.i(TAG, (end - start) + " milliseconds to list all " + contacts.size() + " contacts");
         return contacts;
     }
 
-    private List<ContactsPojo> createPhoneContacts(@NonNull Context ctx, Map<String, BasicContact> basicContacts, Map<Long, BasicRawContact> basicRawContacts) {
+    /**
+     * @param selection  selection to restrict, may be null
+     * @param column     column holding the contact id
+     * @param contactIds ids of contacts to query, null for all contacts
+     * @return selection restricted to given contacts
+     */
+    @Nullable
+    private static String restrictToContacts(@Nullable String selection, String column, @Nullable Set<Long> contactIds) {
+        if (contactIds == null) {
+            return selection;
+        }
+        StringBuilder restriction = new StringBuilder();
+        if (selection != null) {
+            restriction.append('(').append(selection).append(") AND ");
+        }
+        restriction.append(column).append(" IN (");
+        boolean first = true;
+        for (Long contactId : contactIds) {
+            if (!first) {
+                restriction.append(',');
+            }
+            restriction.append(contactId.longValue());
+            first = false;
+        }
+        return restriction.append(')').toString();
+    }
+
+    private List<ContactsPojo> createPhoneContacts(@NonNull Context ctx, Map<String, BasicContact> basicContacts, Map<Long, BasicRawContact> basicRawContacts, @Nullable Set<Long> contactIds) {
 
         // Prevent duplicates by keeping in memory encountered contacts.
         Map<String, Set<ContactsPojo>> mapContacts = new HashMap<>();
@@ -177,7 +323,8 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
                 new String[]{ContactsContract.Contacts.LOOKUP_KEY,
                         ContactsContract.CommonDataKinds.Phone.RAW_CONTACT_ID,
                         ContactsContract.CommonDataKinds.Phone.NUMBER,
-                        ContactsContract.CommonDataKinds.Phone.IS_PRIMARY}, null, null, null)) {
+                        ContactsContract.CommonDataKinds.Phone.IS_PRIMARY},
+                restrictToContacts(null, ContactsContract.CommonDataKinds.Phone.CONTACT_ID, contactIds), null, null)) {
             if (phoneCursor != null) {
                 if (phoneCursor.getCount() > 0) {
                     int lookupIndex = phoneCursor.getColumnIndex(ContactsContract.Contacts.LOOKUP_KEY);
@@ -203,7 +350,7 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
                             boolean primary = phoneCursor.getInt(isPrimaryIndex) != 0;
                             Uri icon = basicContact.getIcon();
 
-                            ContactsPojo contact = new ContactsPojo(pojoScheme + contactId + '/' + phone, lookupKey, icon, primary, starred);
+                            ContactsPojo contact = new ContactsPojo(pojoScheme + contactId + '/' + phone, contactId, lookupKey, icon, primary, starred);
                             setNames(contact, basicContact);
 
                             contact.setPhone(phone, false);
@@ -218,7 +365,7 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
         return getFilteredContacts(mapContacts, contact -> contact.normalizedPhone.toString());
     }
 
-    private List<ContactsPojo> createGenericContacts(@NonNull Context ctx, String mimeType, Map<String, BasicContact> basicContacts, Map<Long, BasicRawContact> basicRawContacts) {
+    private List<ContactsPojo> createGenericContacts(@NonNull Context ctx, String mimeType, Map<String, BasicContact> basicContacts, Map<Long, BasicRawContact> basicRawContacts, @Nullable Set<Long> contactIds) {
         final MimeTypeCache mimeTypeCache = KissApplication.getMimeTypeCache(ctx);
         // Prevent duplicates by keeping in memory encountered contacts.
         Map<String, Set<ContactsPojo>> mapContacts = new HashMap<>();
@@ -238,7 +385,7 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
         try (Cursor mimeTypeCursor = ctx.getContentResolver().query(
                 ContactsContract.Data.CONTENT_URI,
                 columns.toArray(new String[]{}),
-                ContactsContract.Data.MIMETYPE + "= ?",
+                restrictToContacts(ContactsContract.Data.MIMETYPE + "= ?", ContactsContract.Data.CONTACT_ID, contactIds),
                 new String[]{mimeType}, null)) {
             if (mimeTypeCursor != null) {
                 if (mimeTypeCursor.getCount() > 0) {
@@ -269,7 +416,7 @@ public class LoadContactsPojos extends LoadPojos<ContactsPojo> {
                             }
                             Uri icon = basicContact.getIcon();
 
-                            ContactsPojo contact = new ContactsPojo(pojoScheme + contactId + '/' + MimeTypeUtils.getShortMimeType(mimeType) + '/' + id, lookupKey, icon, primary, basicRawContact.isStarred());
+                            ContactsPojo contact = new ContactsPojo(pojoScheme + contactId + '/' + MimeTypeUtils.getShortMimeType(mimeType) + '/' + id, contactId, lookupKey, icon, primary, basicRawContact.isStarred());
                             setNames(contact, basicContact);
 
                             ContactData contactData = new ContactData(mimeType, id);
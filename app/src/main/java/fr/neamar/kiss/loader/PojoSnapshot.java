@@ -0,0 +1,180 @@
+package fr.neamar.kiss.loader;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.neamar.kiss.normalizer.StringNormalizer;
+import fr.neamar.kiss.pojo.Pojo;
+
+/**
+ * Binary copy of the pojos of a provider, stored in the cache directory.
+ * <p>
+ * Loading pojos from the system takes seconds on devices with many apps or contacts. The snapshot
+ * written after the last load is restored when the provider starts, so search is available right
+ * away while the pojos are loaded again from the system in the background.
+ * Names are stored already normalized, restoring a snapshot does not need any normalization.
+ * <p>
+ * Snapshot files are {cacheDir}/pojos/{name}
+ */
+public abstract class PojoSnapshot<T extends Pojo> {
+    private static final String TAG = PojoSnapshot.class.getSimpleName();
+    private static final int MAGIC = 0x4b495353;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final int version;
+
+    /**
+     * @param name    file name of the snapshot
+     * @param version format of the pojos, must be increased whenever {@link #writePojo(DataOutputStream, Pojo)} changes
+     */
+    PojoSnapshot(String name, int version) {
+        this.name = name;
+        this.version = version;
+    }
+
+    /**
+     * Restore pojos from snapshot.
+     *
+     * @param context android context
+     * @return pojos from snapshot, null if there is no usable snapshot
+     */
+    @Nullable
+    public List<T> read(Context context) {
+        AtomicFile file = getFile(context);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead(), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != version) {
+                Log.i(TAG, "Ignoring snapshot with unknown format: " + name);
+                return null;
+            }
+            int count = in.readInt();
+            List<T> pojos = new ArrayList<>(Math.max(0, count));
+            for (int i = 0; i < count; i += 1) {
+                T pojo = readPojo(context, in);
+                if (pojo != null) {
+                    pojos.add(pojo);
+                }
+            }
+            return pojos;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to read snapshot: " + name, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Replace snapshot with given pojos.
+     * Must not be called from the UI thread.
+     *
+     * @param context android context
+     * @param pojos   pojos to store
+     */
+    public void write(Context context, List<T> pojos) {
+        AtomicFile file = getFile(context);
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(version);
+            out.writeInt(pojos.size());
+            for (T pojo : pojos) {
+                writePojo(out, pojo);
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to write snapshot: " + name, e);
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    /**
+     * Remove snapshot, e.g. when the data must not be kept anymore.
+     */
+    public void delete(Context context) {
+        getFile(context).delete();
+    }
+
+    /**
+     * Write all fields needed to restore given pojo.
+     */
+    abstract void writePojo(DataOutputStream out, T pojo) throws IOException;
+
+    /**
+     * Read pojo written by {@link #writePojo(DataOutputStream, Pojo)}
+     *
+     * @return pojo, or null if it can't be restored anymore
+     */
+    @Nullable
+    abstract T readPojo(Context context, DataInputStream in) throws IOException;
+
+    @NonNull
+    private AtomicFile getFile(Context context) {
+        File dir = new File(context.getCacheDir(), "pojos");
+        if (!dir.exists() && !dir.mkdir()) {
+            Log.w(TAG, "Failed to create path " + dir.getPath());
+        }
+        return new AtomicFile(new File(dir, name));
+    }
+
+    static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeNormalized(DataOutputStream out, @Nullable StringNormalizer.Result value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            value.writeTo(out);
+        }
+    }
+
+    @Nullable
+    static StringNormalizer.Result readNormalized(DataInputStream in) throws IOException {
+        return in.readBoolean() ? StringNormalizer.Result.readFrom(in) : null;
+    }
+
+    /**
+     * Write name of pojo including its normalized version
+     */
+    static void writeName(DataOutputStream out, Pojo pojo) throws IOException {
+        writeString(out, pojo.getName());
+        writeNormalized(out, pojo.normalizedName);
+    }
+
+    /**
+     * Restore name written by {@link #writeName(DataOutputStream, Pojo)}
+     */
+    static void readName(DataInputStream in, Pojo pojo) throws IOException {
+        pojo.setName(readString(in), false);
+        pojo.normalizedName = readNormalized(in);
+    }
+}
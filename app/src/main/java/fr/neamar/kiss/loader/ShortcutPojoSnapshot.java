@@ -0,0 +1,50 @@
+package fr.neamar.kiss.loader;
+
+import android.content.Context;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import fr.neamar.kiss.db.ShortcutRecord;
+import fr.neamar.kiss.pojo.ShortcutPojo;
+
+public class ShortcutPojoSnapshot extends PojoSnapshot<ShortcutPojo> {
+    private static final int VERSION = 1;
+
+    public ShortcutPojoSnapshot() {
+        super("shortcuts", VERSION);
+    }
+
+    @Override
+    void writePojo(DataOutputStream out, ShortcutPojo pojo) throws IOException {
+        out.writeUTF(pojo.packageName);
+        out.writeUTF(pojo.intentUri);
+        writeString(out, pojo.getComponentName());
+        out.writeBoolean(pojo.isPinned());
+        out.writeBoolean(pojo.isDynamic());
+        out.writeBoolean(pojo.isDisabled());
+        writeName(out, pojo);
+        writeString(out, pojo.getTags());
+    }
+
+    @Override
+    ShortcutPojo readPojo(Context context, DataInputStream in) throws IOException {
+        ShortcutRecord shortcutRecord = new ShortcutRecord();
+        shortcutRecord.packageName = in.readUTF();
+        shortcutRecord.intentUri = in.readUTF();
+        String componentName = readString(in);
+        boolean pinned = in.readBoolean();
+        boolean dynamic = in.readBoolean();
+        boolean disabled = in.readBoolean();
+
+        // name is needed to generate the id, read it before creating the pojo
+        String name = readString(in);
+        shortcutRecord.name = name;
+        ShortcutPojo pojo = new ShortcutPojo(shortcutRecord, componentName, pinned, dynamic, disabled);
+        pojo.setName(name, false);
+        pojo.normalizedName = readNormalized(in);
+        pojo.setTags(readString(in));
+        return pojo;
+    }
+}
@@ -6,7 +6,7 @@ package fr.neamar.kiss.normalizer;
  * <p/>
  * Created by Alexander Schlarb on 17.08.15.
  */
-class IntSequenceBuilder {
+public class IntSequenceBuilder {
     private int[] data;
     private int size;
 
@@ -42,6 +42,34 @@ class IntSequenceBuilder {
     }
 
 
+    /**
+     * @return number of elements stored in this builder
+     */
+    public int size() {
+        return this.size;
+    }
+
+
+    /**
+     * @param index index of the element to return
+     * @return the element at given index
+     */
+    public int get(int index) {
+        if (index >= this.size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+
+        return this.data[index];
+    }
+
+
+    /**
+     * Remove all elements from this builder, keeping the internal storage array for reuse
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+
     /**
      * Export an array with the current data stored in this builder
      *
@@ -2,6 +2,9 @@ package fr.neamar.kiss.normalizer;
 
 import androidx.annotation.NonNull;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.CharBuffer;
 import java.text.Normalizer;
 import java.util.Arrays;
@@ -119,6 +122,39 @@ public class StringNormalizer {
             return this.codePoints.length;
         }
 
+        /**
+         * Write this result, so it can be restored by {@link #readFrom(DataInput)} without normalizing the input again
+         *
+         * @param out where to write
+         */
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeInt(originalInputLastCharPosition);
+            out.writeInt(codePoints.length);
+            for (int i = 0; i < codePoints.length; i += 1) {
+                out.writeInt(codePoints[i]);
+                out.writeInt(mapPositions[i]);
+            }
+        }
+
+        /**
+         * @param in where to read from
+         * @return result previously written with {@link #writeTo(DataOutput)}
+         */
+        public static Result readFrom(DataInput in) throws IOException {
+            int originalInputLastCharPosition = in.readInt();
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid length: " + length);
+            }
+            int[] codePoints = new int[length];
+            int[] mapPositions = new int[length];
+            for (int i = 0; i < length; i += 1) {
+                codePoints[i] = in.readInt();
+                mapPositions[i] = in.readInt();
+            }
+            return new Result(originalInputLastCharPosition, codePoints, mapPositions);
+        }
+
         /**
          * Map a position in the normalized string to a position in the original string
          *
@@ -7,6 +7,8 @@ import fr.neamar.kiss.normalizer.PhoneNormalizer;
 import fr.neamar.kiss.normalizer.StringNormalizer;
 
 public final class ContactsPojo extends Pojo {
+    // Id of the aggregated contact, see ContactsContract.Contacts._ID
+    public final long contactId;
     public final String lookupKey;
 
     public String phone;
@@ -32,8 +34,9 @@ public final class ContactsPojo extends Pojo {
 
     private ContactData contactData;
 
-    public ContactsPojo(String id, String lookupKey, Uri icon, boolean primary, boolean starred) {
+    public ContactsPojo(String id, long contactId, String lookupKey, Uri icon, boolean primary, boolean starred) {
         super(id);
+        this.contactId = contactId;
         this.lookupKey = lookupKey;
         this.icon = icon;
         this.primary = primary;
@@ -1,7 +1,6 @@
 package fr.neamar.kiss.pojo;
 
 import fr.neamar.kiss.normalizer.StringNormalizer;
-import fr.neamar.kiss.utils.FuzzyScore;
 
 public abstract class Pojo {
     public static final String DEFAULT_ID = "(none)";
@@ -14,9 +13,6 @@ public abstract class Pojo {
     public StringNormalizer.Result normalizedName = null;
     // Lower-cased name, for faster search
     //public String nameNormalized = "";
-    // How relevant is this record ? The higher, the most probable it will be
-    // displayed
-    public int relevance = 0;
     // Name for this pojo, e.g. app name
     private String name = "";
 
@@ -73,21 +69,6 @@ public abstract class Pojo {
         return getHistoryId();
     }
 
-    /**
-     * Updates relevance of this pojo with score of given {@code matchInfo} if there is a match.
-     *
-     * @param matchInfo used for update
-     * @param matched   flag to indicate if there was already a match before. If {@code matched} is false relevance is always set to {@link fr.neamar.kiss.utils.FuzzyScore.MatchInfo#score}, else it will be only set if {@link fr.neamar.kiss.utils.FuzzyScore.MatchInfo#score} is also higher than current value of relevance.
-     * @return true, if {@link fr.neamar.kiss.utils.FuzzyScore.MatchInfo#match} is true and relevance was updated, else value of {@code matched} is returned as is
-     */
-    public boolean updateMatchingRelevance(FuzzyScore.MatchInfo matchInfo, boolean matched) {
-        if (matchInfo.match && (!matched || matchInfo.score > relevance)) {
-            this.relevance = matchInfo.score;
-            return true;
-        }
-        return matched;
-    }
-
     public boolean isDisabled() {
         return false;
     }
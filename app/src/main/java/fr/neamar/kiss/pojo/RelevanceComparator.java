@@ -1,18 +1,21 @@
 package fr.neamar.kiss.pojo;
 
+import java.util.Comparator;
+
 /**
- * Comparator for comparing {@link Pojo} by relevance.
+ * Comparator for comparing {@link ScoredPojo} by relevance.
  * If relevance is equal then compare by name with reversed order.
  */
-public class RelevanceComparator extends ReversedNameComparator {
+public class RelevanceComparator implements Comparator<ScoredPojo> {
+    private final ReversedNameComparator nameComparator = new ReversedNameComparator();
 
     @Override
-    public int compare(Pojo lhs, Pojo rhs) {
+    public int compare(ScoredPojo lhs, ScoredPojo rhs) {
         int result = Integer.compare(lhs.relevance, rhs.relevance);
         if (result != 0) {
             return result;
         }
 
-        return super.compare(lhs, rhs);
+        return nameComparator.compare(lhs.pojo, rhs.pojo);
     }
 }
@@ -0,0 +1,60 @@
+package fr.neamar.kiss.pojo;
+
+import androidx.annotation.NonNull;
+
+import fr.neamar.kiss.utils.FuzzyScore;
+
+/**
+ * A {@link Pojo} found by a search, with its relevance for that search.
+ * <p>
+ * Pojos are shared by all searches (and by several providers answering the same search at once),
+ * so the relevance computed for a query is kept here instead of on the pojo itself.
+ * Instances are immutable, adjusting the relevance creates a new instance.
+ */
+public final class ScoredPojo {
+    /**
+     * Relevance of a pojo that did not match (yet), lower than any score of {@link FuzzyScore}
+     */
+    public static final int NO_MATCH = Integer.MIN_VALUE;
+
+    @NonNull
+    public final Pojo pojo;
+    // How relevant is this record for the search? The higher, the most probable it will be displayed
+    public final int relevance;
+
+    public ScoredPojo(@NonNull Pojo pojo, int relevance) {
+        this.pojo = pojo;
+        this.relevance = relevance;
+    }
+
+    /**
+     * @param delta value to add to the relevance
+     * @return this record with adjusted relevance
+     */
+    public ScoredPojo withRelevanceAdded(int delta) {
+        if (delta == 0) {
+            return this;
+        }
+        return new ScoredPojo(pojo, relevance + delta);
+    }
+
+    /**
+     * Get best relevance from score of given {@code matchInfo} and current relevance.
+     *
+     * @param matchInfo used for update
+     * @param relevance best relevance so far, {@link #NO_MATCH} if there was no match before
+     * @return {@link fr.neamar.kiss.utils.FuzzyScore.MatchInfo#score} if {@link fr.neamar.kiss.utils.FuzzyScore.MatchInfo#match} is true and score is higher than {@code relevance}, else {@code relevance} as is
+     */
+    public static int getMatchingRelevance(FuzzyScore.MatchInfo matchInfo, int relevance) {
+        if (matchInfo.match && matchInfo.score > relevance) {
+            return matchInfo.score;
+        }
+        return relevance;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return pojo.id + " (" + relevance + ")";
+    }
+}
@@ -16,8 +16,10 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import fr.neamar.kiss.BuildConfig;
@@ -105,13 +107,14 @@ public class ImportSettingsPreference extends DialogPreference {
                 // Import tags
                 if (jsonObject.has("__tags")) {
                     TagsHandler tagHandler = dataHandler.getTagsHandler();
-                    tagHandler.clearTags();
                     JSONObject tags = jsonObject.getJSONObject("__tags");
+                    Map<String, String> tagsById = new HashMap<>();
                     Iterator<?> tagKeys = tags.keys();
                     while (tagKeys.hasNext()) {
                         String id = (String) tagKeys.next();
-                        tagHandler.setTags(id, tags.getString(id));
+                        tagsById.put(id, tags.getString(id));
                     }
+                    tagHandler.replaceTags(tagsById);
                 }
 
                 dataHandler.reloadApps();
@@ -86,6 +86,10 @@ public class AppResult extends Result<AppPojo> {
             if (appIcon.getTag() instanceof ComponentName && className.equals(appIcon.getTag())) {
                 icon = appIcon.getDrawable();
             }
+            if (!isDrawableCached()) {
+                // icon may have been prefetched, see IconPrefetcher
+                icon = KissApplication.getApplication(context).getIconsHandler().getCachedDrawableIconForPackage(className, this.pojo.userHandle);
+            }
             this.setAsyncDrawable(appIcon);
         } else {
             appIcon.setImageDrawable(null);
@@ -5,12 +5,13 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.preference.PreferenceManager;
 import android.provider.ContactsContract;
 import android.text.TextUtils;
-import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
@@ -20,8 +21,6 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.concurrent.atomic.AtomicReference;
 
 import fr.neamar.kiss.IconsHandler;
@@ -46,7 +45,6 @@ public class ContactsResult extends CallResult<ContactsPojo> {
     private volatile Drawable icon = null;
     private volatile Drawable appDrawable = null;
     private Utilities.AsyncRun mLoadIconTask = null;
-    private static final String TAG = ContactsResult.class.getSimpleName();
 
     ContactsResult(QueryInterface queryInterface, @NonNull ContactsPojo pojo) {
         super(pojo);
@@ -248,11 +246,9 @@ public class ContactsResult extends CallResult<ContactsPojo> {
             synchronized (this) {
                 if (!isDrawableCached()) {
                     if (pojo.icon != null) {
-                        try (InputStream inputStream = context.getContentResolver()
-                                .openInputStream(pojo.icon)) {
-                            icon = Drawable.createFromStream(inputStream, null);
-                        } catch (IOException e) {
-                            Log.v(TAG, "Unable to load contact icon", e);
+                        Bitmap photo = KissApplication.getContactPhotoCache(context).getPhoto(context, pojo.lookupKey, pojo.icon);
+                        if (photo != null) {
+                            icon = new BitmapDrawable(context.getResources(), photo);
                         }
                     }
 
@@ -0,0 +1,123 @@
+package fr.neamar.kiss.result;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.neamar.kiss.IconsHandler;
+import fr.neamar.kiss.KissApplication;
+import fr.neamar.kiss.pojo.AppPojo;
+import fr.neamar.kiss.pojo.Pojo;
+import fr.neamar.kiss.utils.Utilities;
+
+/**
+ * Load icons in background before they are displayed.
+ * <p>
+ * Icons are loaded one at a time, by a thread of lowest priority that waits while icons of visible views
+ * are loading. Nothing is loaded in battery saver mode. A new request replaces the previous one.
+ */
+public class IconPrefetcher {
+    private static final String TAG = IconPrefetcher.class.getSimpleName();
+    /**
+     * Time to wait for icons of visible views to load before checking again
+     */
+    private static final long BUSY_WAIT_MS = 50;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+        runnable.run();
+    }, TAG));
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    private IconPrefetcher() {
+    }
+
+    /**
+     * Load icons of results, so that these are cached by the results.
+     *
+     * @param context android context
+     * @param results results, not modified afterwards
+     */
+    public static void prefetchResults(@NonNull Context context, @NonNull List<Result<?>> results) {
+        submit(context, () -> results);
+    }
+
+    /**
+     * Load icons of apps, so that these are cached by {@link IconsHandler} for any result displaying them.
+     *
+     * @param context android context
+     * @param pojos   provides pojos to prefetch, called in background
+     */
+    public static void prefetchPojos(@NonNull Context context, @NonNull Callable<List<Pojo>> pojos) {
+        submit(context, pojos);
+    }
+
+    private static void submit(@NonNull Context context, @NonNull Callable<? extends List<?>> items) {
+        if (isPowerSaveMode(context)) {
+            return;
+        }
+        final int requestGeneration = generation.incrementAndGet();
+        EXECUTOR.execute(() -> {
+            if (requestGeneration != generation.get()) {
+                return;
+            }
+            try {
+                for (Object item : items.call()) {
+                    if (!waitForIdle(requestGeneration)) {
+                        return;
+                    }
+                    load(context, item);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Unable to prefetch icons", e);
+            }
+        });
+    }
+
+    private static void load(@NonNull Context context, Object item) {
+        if (item instanceof AppResult || item instanceof ContactsResult || item instanceof ShortcutsResult) {
+            Result<?> result = (Result<?>) item;
+            if (!result.isDrawableCached()) {
+                result.getDrawable(context);
+            }
+        } else if (item instanceof AppPojo) {
+            AppPojo appPojo = (AppPojo) item;
+            IconsHandler iconsHandler = KissApplication.getApplication(context).getIconsHandler();
+            iconsHandler.getDrawableIconForPackage(new ComponentName(appPojo.packageName, appPojo.activityName), appPojo.userHandle);
+        }
+    }
+
+    /**
+     * Wait until no icons of visible views are loading.
+     *
+     * @return false if request was replaced meanwhile
+     */
+    private static boolean waitForIdle(int requestGeneration) throws InterruptedException {
+        while (requestGeneration == generation.get()) {
+            if (Utilities.isIconExecutorIdle()) {
+                return true;
+            }
+            Thread.sleep(BUSY_WAIT_MS);
+        }
+        return false;
+    }
+
+    private static boolean isPowerSaveMode(@NonNull Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+            return powerManager != null && powerManager.isPowerSaveMode();
+        }
+        return false;
+    }
+}
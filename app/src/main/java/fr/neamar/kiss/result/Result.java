@@ -49,6 +49,7 @@ import fr.neamar.kiss.pojo.AppPojo;
 import fr.neamar.kiss.pojo.ContactsPojo;
 import fr.neamar.kiss.pojo.PhonePojo;
 import fr.neamar.kiss.pojo.Pojo;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.pojo.SearchPojo;
 import fr.neamar.kiss.pojo.SettingPojo;
 import fr.neamar.kiss.pojo.ShortcutPojo;
@@ -56,6 +57,7 @@ import fr.neamar.kiss.pojo.TagDummyPojo;
 import fr.neamar.kiss.searcher.QueryInterface;
 import fr.neamar.kiss.ui.ListPopup;
 import fr.neamar.kiss.utils.FuzzyScore;
+import fr.neamar.kiss.utils.Utilities;
 
 public abstract class Result<T extends Pojo> {
 
@@ -64,11 +66,21 @@ public abstract class Result<T extends Pojo> {
      */
     @NonNull
     protected final T pojo;
+    /**
+     * Relevance of the pojo for the search that found it, only used for debugging
+     */
+    private int relevance = 0;
 
     Result(@NonNull T pojo) {
         this.pojo = pojo;
     }
 
+    public static Result<?> fromScoredPojo(QueryInterface parent, @NonNull ScoredPojo scoredPojo) {
+        Result<?> result = fromPojo(parent, scoredPojo.pojo);
+        result.relevance = scoredPojo.relevance;
+        return result;
+    }
+
     public static Result<?> fromPojo(QueryInterface parent, @NonNull Pojo pojo) {
         if (pojo instanceof AppPojo)
             return new AppResult((AppPojo) pojo);
@@ -227,7 +239,7 @@ public abstract class Result<T extends Pojo> {
         }
 
         if (BuildConfig.DEBUG) {
-            adapter.add(new ListPopup.Item("Relevance: " + pojo.relevance));
+            adapter.add(new ListPopup.Item("Relevance: " + relevance));
         }
 
         return menu;
@@ -389,9 +401,7 @@ public abstract class Result<T extends Pojo> {
                 view.setImageDrawable(getDrawable(view.getContext()));
                 view.setTag(this);
             } else {
-                // use AsyncTask.SERIAL_EXECUTOR explicitly for now
-                // TODO: make execution parallel if needed/possible
-                view.setTag(createAsyncSetImage(view, resId).executeOnExecutor(AsyncTask.SERIAL_EXECUTOR));
+                view.setTag(createAsyncSetImage(view, resId).executeOnExecutor(Utilities.getIconExecutor()));
             }
         }
     }
@@ -1,10 +1,8 @@
 package fr.neamar.kiss.searcher;
 
-import android.content.Context;
-
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.Set;
 
 import fr.neamar.kiss.KissApplication;
@@ -12,6 +10,7 @@ import fr.neamar.kiss.MainActivity;
 import fr.neamar.kiss.pojo.AppPojo;
 import fr.neamar.kiss.pojo.Pojo;
 import fr.neamar.kiss.pojo.ReversedNameComparator;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.pojo.ShortcutPojo;
 
 /**
@@ -23,9 +22,10 @@ public class ApplicationsSearcher extends Searcher {
     }
 
     @Override
-    PriorityQueue<Pojo> getPojoProcessor(Context context) {
+    Comparator<ScoredPojo> getPojoComparator() {
         // Sort from A to Z, so reverse (last item needs to be A, listview starts at the bottom)
-        return new PriorityQueue<>(DEFAULT_MAX_RESULTS, new ReversedNameComparator());
+        ReversedNameComparator nameComparator = new ReversedNameComparator();
+        return (lhs, rhs) -> nameComparator.compare(lhs.pojo, rhs.pojo);
     }
 
     @Override
@@ -71,17 +71,14 @@ public class ApplicationsSearcher extends Searcher {
     /**
      * @param pojos               list of pojos
      * @param excludedFavoriteIds ids of favorites to exclude from pojos
-     * @return pojos without favorites
+     * @return pojos without favorites, all with the same relevance since they are ordered by name
      */
-    private <T extends Pojo> List<T> getPojosWithoutFavorites(List<T> pojos, Set<String> excludedFavoriteIds) {
-        if (excludedFavoriteIds.isEmpty()) {
-            return pojos;
-        }
-        List<T> records = new ArrayList<>(pojos.size());
+    private List<ScoredPojo> getPojosWithoutFavorites(List<? extends Pojo> pojos, Set<String> excludedFavoriteIds) {
+        List<ScoredPojo> records = new ArrayList<>(pojos.size());
 
-        for (T pojo : pojos) {
+        for (Pojo pojo : pojos) {
             if (!excludedFavoriteIds.contains(pojo.getFavoriteId())) {
-                records.add(pojo);
+                records.add(new ScoredPojo(pojo, 0));
             }
         }
         return records;
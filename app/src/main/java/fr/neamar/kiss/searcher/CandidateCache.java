@@ -0,0 +1,82 @@
+package fr.neamar.kiss.searcher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import fr.neamar.kiss.dataprovider.IProvider;
+import fr.neamar.kiss.pojo.Pojo;
+
+/**
+ * Remembers, for each provider, which pojos matched the last query.
+ * <p>
+ * When the user keeps typing ("sp" → "spo" → "spot"), a pojo that did not match the shorter query
+ * can not match the longer one either: {@link fr.neamar.kiss.utils.FuzzyScore} only matches if every
+ * character of the query is found in order. Providers therefore only need to re-score the pojos
+ * that matched the previous query.
+ */
+class CandidateCache {
+    private final Map<IProvider<?>, Entry> entries = new WeakHashMap<>();
+
+    /**
+     * @param provider provider asking for candidates
+     * @param pojos    all pojos of the provider
+     * @param query    normalized query
+     * @param scope    provider defined value describing what was searched for this query, candidates are only reused when scope is unchanged
+     * @return pojos that may match given query
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T extends Pojo> List<T> getCandidates(IProvider<T> provider, List<T> pojos, int[] query, int scope) {
+        Entry entry = entries.get(provider);
+        if (entry != null && entry.pojos == pojos && entry.scope == scope && isRefinementOf(query, entry.query)) {
+            return (List<T>) entry.matches;
+        }
+        return pojos;
+    }
+
+    /**
+     * Store the pojos that matched given query, these will be the candidates for the next query if it extends this one.
+     *
+     * @param provider provider the pojos belong to
+     * @param pojos    all pojos of the provider
+     * @param query    normalized query
+     * @param scope    provider defined value describing what was searched for this query
+     * @param matches  pojos that matched the query
+     */
+    synchronized <T extends Pojo> void setMatches(IProvider<T> provider, List<T> pojos, int[] query, int scope, List<T> matches) {
+        entries.put(provider, new Entry(pojos, query, scope, matches));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return true if query starts with previousQuery (case insensitive, same as {@link fr.neamar.kiss.utils.FuzzyScore})
+     */
+    private static boolean isRefinementOf(int[] query, int[] previousQuery) {
+        if (query.length < previousQuery.length) {
+            return false;
+        }
+        for (int i = 0; i < previousQuery.length; i += 1) {
+            if (Character.toLowerCase(query[i]) != Character.toLowerCase(previousQuery[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        final List<?> pojos;
+        final int[] query;
+        final int scope;
+        final List<?> matches;
+
+        Entry(List<?> pojos, int[] query, int scope, List<?> matches) {
+            this.pojos = pojos;
+            this.query = query;
+            this.scope = scope;
+            this.matches = matches;
+        }
+    }
+}
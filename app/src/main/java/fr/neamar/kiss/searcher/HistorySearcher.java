@@ -4,6 +4,7 @@ import android.content.SharedPreferences;
 import android.content.pm.ShortcutInfo;
 import android.preference.PreferenceManager;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -15,6 +16,7 @@ import fr.neamar.kiss.db.HistoryMode;
 import fr.neamar.kiss.db.ShortcutRecord;
 import fr.neamar.kiss.pojo.AppPojo;
 import fr.neamar.kiss.pojo.Pojo;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.utils.ShortcutUtil;
 
 /**
@@ -77,14 +79,14 @@ public class HistorySearcher extends Searcher {
             }
         }
 
-        List<Pojo> pojos = dataHandler.getHistory(activity, getMaxResultCount(), excludedPojoById);
+        List<ScoredPojo> results = dataHandler.getHistory(activity, getMaxResultCount(), excludedPojoById);
 
-        this.addResults(pojos);
+        this.addResults(results);
         return null;
     }
 
     @Override
-    public boolean addResults(List<? extends Pojo> pojos) {
+    public boolean addResults(List<ScoredPojo> results) {
         MainActivity activity = activityWeakReference.get();
         if (activity == null) {
             return false;
@@ -92,14 +94,17 @@ public class HistorySearcher extends Searcher {
 
         DataHandler dataHandler = KissApplication.getApplication(activity).getDataHandler();
         if (dataHandler.getHistoryMode() != HistoryMode.ALPHABETICALLY) {
-            for (Pojo pojo : pojos) {
-                if (pojo.isDisabled()) {
+            List<ScoredPojo> penalizedResults = new ArrayList<>(results.size());
+            for (ScoredPojo result : results) {
+                if (result.pojo.isDisabled()) {
                     // Give penalty for disabled items, these should not be preferred
-                    pojo.relevance -= 200;
+                    result = result.withRelevanceAdded(-200);
                 }
+                penalizedResults.add(result);
             }
+            results = penalizedResults;
         }
 
-        return super.addResults(pojos);
+        return super.addResults(results);
     }
 }
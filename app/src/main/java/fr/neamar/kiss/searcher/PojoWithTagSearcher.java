@@ -8,11 +8,12 @@ import androidx.annotation.NonNull;
 import java.util.ArrayList;
 import java.util.List;
 
+import fr.neamar.kiss.DataHandler;
 import fr.neamar.kiss.KissApplication;
 import fr.neamar.kiss.MainActivity;
 import fr.neamar.kiss.db.HistoryMode;
-import fr.neamar.kiss.pojo.Pojo;
 import fr.neamar.kiss.pojo.PojoWithTags;
+import fr.neamar.kiss.pojo.ScoredPojo;
 
 /**
  * Returns a list of all results that match the specified pojo with tags.
@@ -32,21 +33,29 @@ public abstract class PojoWithTagSearcher extends Searcher {
         if (activity == null)
             return null;
 
-        KissApplication.getApplication(activity).getDataHandler().requestAllRecords(this);
+        requestRecords(KissApplication.getApplication(activity).getDataHandler());
 
         return null;
     }
 
+    /**
+     * Get candidate records, {@link #addResults(List)} keeps those accepted by {@link #acceptPojo(PojoWithTags)}.
+     * Defaults to all records.
+     */
+    protected void requestRecords(DataHandler dataHandler) {
+        dataHandler.requestAllRecords(this);
+    }
+
     @Override
-    public boolean addResults(List<? extends Pojo> pojos) {
-        List<Pojo> filteredPojos = new ArrayList<>();
-        for (Pojo pojo : pojos) {
-            if (!(pojo instanceof PojoWithTags)) {
+    public boolean addResults(List<ScoredPojo> results) {
+        List<ScoredPojo> filteredResults = new ArrayList<>();
+        for (ScoredPojo result : results) {
+            if (!(result.pojo instanceof PojoWithTags)) {
                 continue;
             }
-            PojoWithTags pojoWithTags = (PojoWithTags) pojo;
+            PojoWithTags pojoWithTags = (PojoWithTags) result.pojo;
             if (acceptPojo(pojoWithTags)) {
-                filteredPojos.add(pojoWithTags);
+                filteredResults.add(result);
             }
         }
 
@@ -55,9 +64,9 @@ public abstract class PojoWithTagSearcher extends Searcher {
             return false;
         }
 
-        KissApplication.getApplication(activity).getDataHandler().applyRelevanceFromHistory(filteredPojos, getTaggedResultSortMode());
+        List<ScoredPojo> scoredResults = KissApplication.getApplication(activity).getDataHandler().applyRelevanceFromHistory(filteredResults, getTaggedResultSortMode());
 
-        return super.addResults(filteredPojos);
+        return super.addResults(scoredResults);
     }
 
     @NonNull
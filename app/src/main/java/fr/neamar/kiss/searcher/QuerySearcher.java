@@ -3,14 +3,17 @@ package fr.neamar.kiss.searcher;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 import fr.neamar.kiss.KissApplication;
 import fr.neamar.kiss.MainActivity;
 import fr.neamar.kiss.db.DBHelper;
+import fr.neamar.kiss.dataprovider.IProvider;
 import fr.neamar.kiss.db.ValuedHistoryRecord;
 import fr.neamar.kiss.pojo.Pojo;
+import fr.neamar.kiss.pojo.ScoredPojo;
 
 /**
  * AsyncTask retrieving data from the providers and updating the view
@@ -19,6 +22,10 @@ import fr.neamar.kiss.pojo.Pojo;
  */
 public class QuerySearcher extends Searcher {
     private static int MAX_RESULT_COUNT = -1;
+    /**
+     * Pojos that matched the previous query, per provider
+     */
+    private static final CandidateCache candidateCache = new CandidateCache();
     private HashMap<String, Integer> knownIds;
     /**
      * Store user preferences
@@ -47,22 +54,38 @@ public class QuerySearcher extends Searcher {
     }
 
     @Override
-    public boolean addResults(List<? extends Pojo> pojos) {
-        for (Pojo pojo : pojos) {
-            if (pojo.isDisabled()) {
+    public boolean addResults(List<ScoredPojo> results) {
+        List<ScoredPojo> boostedResults = new ArrayList<>(results.size());
+        for (ScoredPojo result : results) {
+            if (result.pojo.isDisabled()) {
                 // Give penalty for disabled items, these should not be preferred
-                pojo.relevance -= 200;
+                result = result.withRelevanceAdded(-200);
             } else {
                 // Give a boost if item was previously selected for this query
-                Integer value = knownIds.get(pojo.id);
+                Integer value = knownIds.get(result.pojo.id);
                 if (value != null) {
-                    pojo.relevance += 25 * value;
+                    result = result.withRelevanceAdded(25 * value);
                 }
             }
+            boostedResults.add(result);
         }
 
         // call super implementation to update the adapter
-        return super.addResults(pojos);
+        return super.addResults(boostedResults);
+    }
+
+    @Override
+    public <T extends Pojo> List<T> getCandidates(IProvider<T> provider, List<T> pojos, int[] query, int scope) {
+        if (isRefresh) {
+            // Data may have changed since last query, score everything again
+            return pojos;
+        }
+        return candidateCache.getCandidates(provider, pojos, query, scope);
+    }
+
+    @Override
+    public <T extends Pojo> void setMatches(IProvider<T> provider, List<T> pojos, int[] query, int scope, List<T> matches) {
+        candidateCache.setMatches(provider, pojos, query, scope, matches);
     }
 
     /**
@@ -89,4 +112,8 @@ public class QuerySearcher extends Searcher {
     public static void clearMaxResultCountCache() {
         MAX_RESULT_COUNT = -1;
     }
+
+    public static void clearCandidateCache() {
+        candidateCache.clear();
+    }
 }
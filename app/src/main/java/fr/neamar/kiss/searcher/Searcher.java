@@ -1,7 +1,6 @@
 package fr.neamar.kiss.searcher;
 
 
-import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
 
@@ -10,16 +9,19 @@ import androidx.annotation.CallSuper;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import fr.neamar.kiss.KissApplication;
 import fr.neamar.kiss.MainActivity;
+import fr.neamar.kiss.dataprovider.IProvider;
 import fr.neamar.kiss.pojo.Pojo;
 import fr.neamar.kiss.pojo.RelevanceComparator;
+import fr.neamar.kiss.pojo.ScoredPojo;
 import fr.neamar.kiss.result.Result;
+import fr.neamar.kiss.utils.BoundedPriorityQueue;
 
 public abstract class Searcher extends AsyncTask<Void, Result<?>, Void> {
 
@@ -29,13 +31,17 @@ public abstract class Searcher extends AsyncTask<Void, Result<?>, Void> {
     public static final ExecutorService SEARCH_THREAD = Executors.newSingleThreadExecutor();
     static final int DEFAULT_MAX_RESULTS = 50;
     final WeakReference<MainActivity> activityWeakReference;
-    private final PriorityQueue<Pojo> processedPojos;
+    /**
+     * Best results so far, only {@link #getMaxResultCount()} results are kept.
+     * Created in {@link #onPreExecute()}, once subclasses are fully initialized.
+     */
+    private BoundedPriorityQueue<ScoredPojo> processedPojos;
     private long start;
     /**
      * Set to true when we are simply refreshing current results (scroll will not be reset)
      * When false, we reset the scroll back to the last item in the list
      */
-    private final boolean isRefresh;
+    final boolean isRefresh;
     protected final String query;
 
     Searcher(MainActivity activity, String query, boolean isRefresh) {
@@ -43,11 +49,13 @@ public abstract class Searcher extends AsyncTask<Void, Result<?>, Void> {
         this.isRefresh = isRefresh;
         this.query = query == null ? null : query.trim();
         this.activityWeakReference = new WeakReference<>(activity);
-        this.processedPojos = getPojoProcessor(activity);
     }
 
-    PriorityQueue<Pojo> getPojoProcessor(Context context) {
-        return new PriorityQueue<>(DEFAULT_MAX_RESULTS, new RelevanceComparator());
+    /**
+     * @return order of results, greatest results are displayed first
+     */
+    Comparator<ScoredPojo> getPojoComparator() {
+        return new RelevanceComparator();
     }
 
     protected int getMaxResultCount() {
@@ -57,20 +65,57 @@ public abstract class Searcher extends AsyncTask<Void, Result<?>, Void> {
     /**
      * Add single pojo to results.
      * This is called from the background thread by the providers.
+     *
+     * @param pojo      pojo found by the search
+     * @param relevance how relevant the pojo is for this search
      */
-    public final boolean addResult(Pojo pojos) {
-        return addResults(Collections.singletonList(pojos));
+    public final boolean addResult(Pojo pojo, int relevance) {
+        return addResults(Collections.singletonList(new ScoredPojo(pojo, relevance)));
     }
 
     /**
      * Add one or more pojos to results.
-     * This is called from the background thread by the providers.
+     * This is called from the background thread by the providers, possibly from several providers at the same time.
+     * Pojos are shared between searches and must not be modified, relevance of a result is only stored in its {@link ScoredPojo}.
      */
-    public boolean addResults(List<? extends Pojo> pojos) {
+    public boolean addResults(List<ScoredPojo> results) {
         if (isCancelled())
             return false;
 
-        return this.processedPojos.addAll(pojos);
+        synchronized (this.processedPojos) {
+            for (ScoredPojo result : results) {
+                // results worse than all of the current best results are dropped right away
+                this.processedPojos.offer(result);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the pojos a provider needs to score for this search.
+     * This is called from the background thread by the providers.
+     *
+     * @param provider provider asking for candidates
+     * @param pojos    all pojos of the provider
+     * @param query    normalized query
+     * @param scope    provider defined value describing what is searched for this query
+     * @return pojos that may match the query, by default all of them
+     */
+    public <T extends Pojo> List<T> getCandidates(IProvider<T> provider, List<T> pojos, int[] query, int scope) {
+        return pojos;
+    }
+
+    /**
+     * Inform about the pojos of a provider that matched the query.
+     * This is called from the background thread by the providers, once all candidates were scored.
+     *
+     * @param provider provider the pojos belong to
+     * @param pojos    all pojos of the provider, as given to {@link #getCandidates(IProvider, List, int[], int)}
+     * @param query    normalized query
+     * @param scope    provider defined value describing what was searched for this query
+     * @param matches  pojos that matched the query
+     */
+    public <T extends Pojo> void setMatches(IProvider<T> provider, List<T> pojos, int[] query, int scope, List<T> matches) {
     }
 
     @CallSuper
@@ -78,6 +123,7 @@ public abstract class Searcher extends AsyncTask<Void, Result<?>, Void> {
     protected void onPreExecute() {
         super.onPreExecute();
         start = System.currentTimeMillis();
+        processedPojos = new BoundedPriorityQueue<>(Math.max(0, getMaxResultCount()), getPojoComparator());
 
         displayActivityLoader();
     }
@@ -110,13 +156,10 @@ public abstract class Searcher extends AsyncTask<Void, Result<?>, Void> {
         if (this.processedPojos.isEmpty()) {
             activity.adapter.clear();
         } else {
-            PriorityQueue<Pojo> queue = this.processedPojos;
-            int maxResults = getMaxResultCount();
-            while (queue.size() > maxResults)
-                queue.poll();
+            BoundedPriorityQueue<ScoredPojo> queue = this.processedPojos;
             List<Result<?>> results = new ArrayList<>(queue.size());
             while (queue.peek() != null) {
-                results.add(Result.fromPojo(activity, queue.poll()));
+                results.add(Result.fromScoredPojo(activity, queue.poll()));
             }
 
             activity.beforeListChange();
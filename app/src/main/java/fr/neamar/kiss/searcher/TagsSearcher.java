@@ -1,19 +1,47 @@
 package fr.neamar.kiss.searcher;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import fr.neamar.kiss.DataHandler;
 import fr.neamar.kiss.MainActivity;
+import fr.neamar.kiss.pojo.Pojo;
 import fr.neamar.kiss.pojo.PojoWithTags;
+import fr.neamar.kiss.pojo.ScoredPojo;
 
 /**
  * Returns a list of all results that match the specified tag
  */
 public class TagsSearcher extends PojoWithTagSearcher {
+    private Set<String> ids = null;
+
     public TagsSearcher(MainActivity activity, String query) {
         super(activity, query == null ? "<tags>" : query);
     }
 
+    /**
+     * Only look up records having the tag in the tags index
+     */
+    @Override
+    protected void requestRecords(DataHandler dataHandler) {
+        ids = dataHandler.getTagsHandler().getIdsWithTag(query);
+        List<ScoredPojo> pojos = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (isCancelled()) {
+                return;
+            }
+            Pojo pojo = dataHandler.getItemById(id);
+            if (pojo != null) {
+                pojos.add(new ScoredPojo(pojo, 0));
+            }
+        }
+        addResults(pojos);
+    }
+
     @Override
     protected boolean acceptPojo(PojoWithTags pojoWithTags) {
-        return pojoWithTags.getTags() != null && pojoWithTags.getTags().contains(query);
+        return ids != null && ids.contains(pojoWithTags.id);
     }
 
 }
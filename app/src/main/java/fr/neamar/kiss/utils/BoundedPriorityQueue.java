@@ -0,0 +1,127 @@
+package fr.neamar.kiss.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Min-heap keeping only the {@code capacity} greatest elements offered to it.
+ * <p>
+ * Once full, an element that is not greater than the smallest kept one is rejected with a single
+ * comparison, so memory stays bounded by the capacity whatever the number of offered elements.
+ * Not thread safe.
+ */
+public class BoundedPriorityQueue<T> {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    private final Comparator<? super T> comparator;
+    private Object[] heap;
+    private int size = 0;
+
+    /**
+     * @param capacity   maximum number of elements to keep
+     * @param comparator order of elements, smallest ones are dropped first
+     */
+    public BoundedPriorityQueue(int capacity, Comparator<? super T> comparator) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.comparator = comparator;
+        this.heap = new Object[Math.min(capacity, DEFAULT_INITIAL_CAPACITY)];
+    }
+
+    /**
+     * @param element element to add
+     * @return true if element was kept, false if it was rejected because the queue is full of greater elements
+     */
+    public boolean offer(T element) {
+        if (size < capacity) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, (int) Math.min(capacity, heap.length * 2L));
+            }
+            siftUp(size, element);
+            size += 1;
+            return true;
+        }
+
+        if (size == 0 || comparator.compare(element, elementAt(0)) <= 0) {
+            return false;
+        }
+
+        // replace smallest element
+        siftDown(0, element);
+        return true;
+    }
+
+    /**
+     * @return smallest element, or null if empty
+     */
+    public T peek() {
+        return size == 0 ? null : elementAt(0);
+    }
+
+    /**
+     * Remove and return smallest element.
+     *
+     * @return smallest element, or null if empty
+     */
+    public T poll() {
+        if (size == 0) {
+            return null;
+        }
+        T result = elementAt(0);
+        size -= 1;
+        T last = elementAt(size);
+        heap[size] = null;
+        if (size > 0) {
+            siftDown(0, last);
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void siftUp(int index, T element) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            T parentElement = elementAt(parent);
+            if (comparator.compare(element, parentElement) >= 0) {
+                break;
+            }
+            heap[index] = parentElement;
+            index = parent;
+        }
+        heap[index] = element;
+    }
+
+    private void siftDown(int index, T element) {
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            T childElement = elementAt(child);
+            int right = child + 1;
+            if (right < size && comparator.compare(childElement, elementAt(right)) > 0) {
+                child = right;
+                childElement = elementAt(child);
+            }
+            if (comparator.compare(element, childElement) <= 0) {
+                break;
+            }
+            heap[index] = childElement;
+            index = child;
+        }
+        heap[index] = element;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(int index) {
+        return (T) heap[index];
+    }
+}
@@ -5,6 +5,8 @@ import android.util.Pair;
 import java.util.ArrayList;
 import java.util.List;
 
+import fr.neamar.kiss.normalizer.IntSequenceBuilder;
+
 /**
  * A Sublime Text inspired fuzzy match algorithm
  * https://github.com/forrestthewoods/lib_fts/blob/master/docs/fuzzy_match.md
@@ -15,8 +17,12 @@ import java.util.List;
  */
 @SuppressWarnings("CanIgnoreReturnValueSuggester")
 public class FuzzyScore {
+    /**
+     * marker for "no character" / "no index", codepoints and indices are never negative
+     */
+    private static final int NONE = -1;
+
     private final int patternLength;
-    private final int[] patternChar;
     private final int[] patternLower;
     /**
      * bonus if all characters match (useful for short queries)
@@ -49,14 +55,16 @@ public class FuzzyScore {
     private int unmatched_letter_penalty;
 
     private final MatchInfo matchInfo;
+    /**
+     * buffer for codepoints of text given to {@link #match(CharSequence)}
+     */
+    private int[] codepoints = new int[0];
 
     public FuzzyScore(int[] pattern, boolean detailedMatchIndices) {
         super();
         patternLength = pattern.length;
-        patternChar = new int[patternLength];
         patternLower = new int[patternLength];
         for (int i = 0; i < patternLower.length; i += 1) {
-            patternChar[i] = pattern[i];
             patternLower[i] = Character.toLowerCase(pattern[i]);
         }
         full_word_bonus = 100;
@@ -120,14 +128,18 @@ public class FuzzyScore {
         int idx = 0;
         int idxCodepoint = 0;
         int textLength = text.length();
-        int[] codepoints = new int[Character.codePointCount(text, 0, textLength)];
+        int codepointCount = Character.codePointCount(text, 0, textLength);
+        // reuse buffer for codepoints, matching is done on the calling thread only
+        if (codepoints.length < codepointCount) {
+            codepoints = new int[codepointCount];
+        }
         while (idx < textLength) {
             int codepoint = Character.codePointAt(text, idx);
             codepoints[idxCodepoint] = codepoint;
             idx += Character.charCount(codepoint);
             idxCodepoint += 1;
         }
-        return match(codepoints);
+        return match(codepoints, codepointCount);
     }
 
     /**
@@ -135,20 +147,28 @@ public class FuzzyScore {
      * @return true if each character in pattern is found sequentially within text
      */
     public MatchInfo match(int[] text) {
+        return match(text, text.length);
+    }
+
+    /**
+     * @param text      string converted to codepoints
+     * @param strLength number of codepoints of text to use
+     * @return true if each character in pattern is found sequentially within text
+     */
+    private MatchInfo match(int[] text, int strLength) {
         // Loop variables
         int score = 0;
         int patternIdx = 0;
         int strIdx = 0;
-        int strLength = text.length;
         boolean fullWord = false;
         boolean prevMatched = false;
         boolean prevLower = false;
         boolean prevSeparator = true;       // true so if first letter match gets separator bonus
 
         // Use "best" matched letter if multiple string letters match the pattern
-        Integer bestLetter = null;
-        Integer bestLower = null;
-        Integer bestLetterIdx = null;
+        // Codepoints are never negative, so NONE marks that there is no best letter yet
+        int bestLower = NONE;
+        int bestLetterIdx = NONE;
         int bestLetterScore = 0;
 
         if (matchInfo.matchedIndices != null) {
@@ -157,10 +177,8 @@ public class FuzzyScore {
 
         // Loop over strings
         while (strIdx != strLength) {
-            Integer patternChar = null;
-            Integer patternLower = null;
+            int patternLower = NONE;
             if (patternIdx != patternLength) {
-                patternChar = this.patternChar[patternIdx];
                 patternLower = this.patternLower[patternIdx];
             }
             int strChar = text[strIdx];
@@ -168,19 +186,19 @@ public class FuzzyScore {
             int strUpper = Character.toUpperCase(strChar);
             boolean isWhitespace = Character.isWhitespace(strChar);
 
-            boolean nextMatch = patternChar != null && patternLower == strLower;
-            boolean rematch = bestLetter != null && bestLower == strLower;
+            boolean hasBestLetter = bestLetterIdx != NONE;
+            boolean nextMatch = patternLower != NONE && patternLower == strLower;
+            boolean rematch = hasBestLetter && bestLower == strLower;
 
-            boolean advanced = nextMatch && bestLetter != null;
-            boolean patternRepeat = bestLetter != null && patternChar != null && patternLower.equals(bestLower);
+            boolean advanced = nextMatch && hasBestLetter;
+            boolean patternRepeat = hasBestLetter && patternLower != NONE && patternLower == bestLower;
             if (advanced || patternRepeat) {
                 score += bestLetterScore;
                 if (matchInfo.matchedIndices != null) {
                     matchInfo.matchedIndices.add(bestLetterIdx);
                 }
-                bestLetter = null;
-                bestLower = null;
-                bestLetterIdx = null;
+                bestLower = NONE;
+                bestLetterIdx = NONE;
                 bestLetterScore = 0;
             }
 
@@ -224,11 +242,10 @@ public class FuzzyScore {
                 if (newScore >= bestLetterScore) {
 
                     // Apply penalty for now skipped letter
-                    if (bestLetter != null) {
+                    if (bestLetterIdx != NONE) {
                         score += unmatched_letter_penalty;
                     }
 
-                    bestLetter = strChar;
                     bestLower = strLower;
                     bestLetterIdx = strIdx;
                     bestLetterScore = newScore;
@@ -253,7 +270,7 @@ public class FuzzyScore {
         }
 
         // Apply score for last match
-        if (bestLetter != null) {
+        if (bestLetterIdx != NONE) {
             score += bestLetterScore;
             if (matchInfo.matchedIndices != null) {
                 matchInfo.matchedIndices.add(bestLetterIdx);
@@ -276,14 +293,14 @@ public class FuzzyScore {
          */
         public int score;
         public boolean match;
-        final ArrayList<Integer> matchedIndices;
+        final IntSequenceBuilder matchedIndices;
 
         MatchInfo() {
             matchedIndices = null;
         }
 
         MatchInfo(int patternLength) {
-            matchedIndices = new ArrayList<>(patternLength);
+            matchedIndices = new IntSequenceBuilder(patternLength);
         }
 
         public List<Pair<Integer, Integer>> getMatchedSequences() {
@@ -9,6 +9,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.LauncherApps;
 import android.content.pm.ShortcutInfo;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.UserManager;
 import android.preference.PreferenceManager;
@@ -242,7 +243,7 @@ public class ShortcutUtil {
                 pinnedShortcutIds.add(shortcutId);
 
                 launcherApps.pinShortcuts(packageName, pinnedShortcutIds, shortcutToPin.getUserHandle());
-                KissApplication.getApplication(context).getDataHandler().updateShortcut(shortcutToPin, false);
+                AsyncTask.SERIAL_EXECUTOR.execute(() -> KissApplication.getApplication(context).getDataHandler().updateShortcut(shortcutToPin, false));
                 return true;
             }
         }
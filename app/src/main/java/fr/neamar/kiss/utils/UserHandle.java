@@ -96,6 +96,13 @@ public class UserHandle implements Parcelable {
         return (this.handle == null);
     }
 
+    /**
+     * @return serial number of the user, 0 for the current user
+     */
+    public long getSerial() {
+        return this.serial;
+    }
+
 
     public String addUserSuffixToString(String base, char separator) {
         if (this.handle == null) {
@@ -11,6 +11,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class Utilities {
 
@@ -74,6 +77,57 @@ public class Utilities {
         }
     }
 
+    /**
+     * Get executor for loading icons of visible views.
+     * Icons are loaded in parallel by a bounded number of threads, icons requested last are loaded first:
+     * while scrolling, these are the icons of views that are visible now.
+     * Tasks of views that were recycled meanwhile should be cancelled, they are skipped when dequeued.
+     *
+     * @return Executor
+     */
+    public static Executor getIconExecutor() {
+        return IconExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * @return true if no icons of visible views are loading
+     */
+    public static boolean isIconExecutorIdle() {
+        ThreadPoolExecutor executor = IconExecutorHolder.EXECUTOR;
+        return executor.getActiveCount() == 0 && executor.getQueue().isEmpty();
+    }
+
+    private static class IconExecutorHolder {
+        private static final int THREAD_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+        private static ThreadPoolExecutor createExecutor() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS, new LifoBlockingDeque<>());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * Unbounded queue of tasks, last in first out
+     */
+    private static class LifoBlockingDeque<E> extends LinkedBlockingDeque<E> {
+        @Override
+        public boolean offer(E e) {
+            return offerFirst(e);
+        }
+
+        @Override
+        public boolean add(E e) {
+            return offer(e);
+        }
+
+        @Override
+        public void put(E e) throws InterruptedException {
+            putFirst(e);
+        }
+    }
+
     public static class AsyncRun extends AsyncTask<Void, Void, Void> {
         private final Run mBackground;
         private final Run mAfter;
@@ -0,0 +1,253 @@
+package fr.neamar.kiss.db;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+class HistoryModelTest {
+    private static final long HOUR = 3600000L;
+    private static final long NOW = 100 * 24 * HOUR;
+
+    private HistoryModel model;
+    private long nextId;
+
+    @BeforeEach
+    public void setUp() {
+        model = new HistoryModel(TimeZone.getTimeZone("UTC"));
+        nextId = 1;
+    }
+
+    @Test
+    public void testRecency() {
+        add("a", NOW - 5 * HOUR);
+        add("b", NOW - 4 * HOUR);
+        add("a", NOW - 3 * HOUR);
+        add("c", NOW - 2 * HOUR);
+
+        assertThat(records(HistoryMode.RECENCY, 10), equalTo(Arrays.asList("c", "a", "b")));
+        assertThat(records(HistoryMode.RECENCY, 2), equalTo(Arrays.asList("c", "a")));
+    }
+
+    @Test
+    public void testFrequency() {
+        add("a", NOW);
+        add("b", NOW);
+        add("b", NOW);
+        add("c", NOW);
+        add("b", NOW);
+        add("c", NOW);
+
+        List<ValuedHistoryRecord> history = model.getHistory(HistoryMode.FREQUENCY, 10, NOW);
+        assertThat(records(history), equalTo(Arrays.asList("b", "c", "a")));
+        assertThat(history.get(0).value, equalTo(3));
+        assertThat(history.get(1).value, equalTo(2));
+    }
+
+    @Test
+    public void testFrecencyFavorsRecentUse() {
+        add("a", NOW);
+        add("a", NOW);
+        add("a", NOW);
+        add("b", NOW);
+
+        // a: 3 uses, 1 entry ago; b: 1 use, just now
+        assertThat(records(HistoryMode.FRECENCY, 10), equalTo(Arrays.asList("b", "a")));
+    }
+
+    @Test
+    public void testAdaptiveOnlyCountsRecentUses() {
+        add("a", NOW - 100 * HOUR);
+        add("a", NOW - 90 * HOUR);
+        add("a", NOW - 80 * HOUR);
+        add("b", NOW - 2 * HOUR);
+        add("c", NOW - 2 * HOUR);
+        add("c", NOW - HOUR);
+
+        assertThat(records(HistoryMode.ADAPTIVE, 10), equalTo(Arrays.asList("c", "b")));
+    }
+
+    @Test
+    public void testAdaptiveAfterLongTime() {
+        long later = NOW + 800 * 24 * HOUR;
+        add("a", NOW);
+        add("a", NOW);
+        add("b", later - 2 * HOUR);
+        add("c", later - 2 * HOUR);
+        add("c", later - HOUR);
+
+        List<ValuedHistoryRecord> history = model.getHistory(HistoryMode.ADAPTIVE, 10, later);
+        assertThat(records(history), equalTo(Arrays.asList("c", "b")));
+        assertThat(history.get(0).value, equalTo(2));
+    }
+
+    @Test
+    public void testTimePrefersSameTimeOfDay() {
+        add("a", NOW - 12 * HOUR);
+        add("b", NOW - 24 * HOUR);
+        add("c", NOW - 30 * 24 * HOUR);
+        add("d", NOW - 7 * 24 * HOUR);
+
+        // d was used on the same day of the week, a at the opposite time of day
+        assertThat(records(HistoryMode.TIME, 10), equalTo(Arrays.asList("d", "b", "c")));
+        assertThat(records(HistoryMode.TIME, 1), equalTo(Arrays.asList("d")));
+    }
+
+    @Test
+    public void testTimeAfterRemoveOlderThan() {
+        add("a", NOW - 7 * 24 * HOUR);
+        add("b", NOW - 24 * HOUR);
+        add("a", NOW - 2 * 24 * HOUR);
+
+        model.removeOlderThan(NOW - 3 * 24 * HOUR);
+
+        assertThat(records(HistoryMode.TIME, 10), equalTo(Arrays.asList("b", "a")));
+    }
+
+    @Test
+    public void testUnsavedEntriesFollowLoadedOnes() {
+        model.add(10, "", "a", NOW);
+        model.add(11, "", "b", NOW);
+        model.remove("b");
+        model.add("", "c", NOW);
+        model.add("", "a", NOW);
+        model.add("", "d", NOW);
+
+        assertThat(records(HistoryMode.RECENCY, 10), equalTo(Arrays.asList("d", "a", "c")));
+    }
+
+    @Test
+    public void testPreviousResultsForQuery() {
+        add("Spotify", "spotify");
+        add("spo", "spotify");
+        add("sp", "speedtest");
+        add("s", "sms");
+        add("spo", "sports");
+        add("SPORT", "sports");
+        add("sport", "sports");
+        add(null, "spotify");
+
+        List<ValuedHistoryRecord> results = model.getPreviousResultsForQuery("Spo", 10);
+        assertThat(records(results), equalTo(Arrays.asList("sports", "spotify")));
+        assertThat(results.get(0).value, equalTo(3));
+        assertThat(results.get(1).value, equalTo(2));
+        assertThat(records(model.getPreviousResultsForQuery("s", 2)), equalTo(Arrays.asList("sports", "spotify")));
+        assertThat(model.getPreviousResultsForQuery("spotify music", 10), empty());
+    }
+
+    @Test
+    public void testPreviousResultsForQueryAfterRemove() {
+        add("sp", "spotify");
+        add("sp", "sports");
+        add("sp", "sports");
+        add("sp", "spotify");
+        model.remove("sports");
+
+        assertThat(records(model.getPreviousResultsForQuery("sp", 10)), equalTo(Arrays.asList("spotify")));
+
+        model.removeOlderThan(NOW + 1);
+        assertThat(model.getPreviousResultsForQuery("sp", 10), empty());
+    }
+
+    @Test
+    public void testRolledUpEntries() {
+        model.add(nextId++, "sp", "a", 3, NOW - 5 * HOUR, NOW - 3 * HOUR);
+        add("sp", "b");
+        add("sp", "b");
+        add("c", NOW - HOUR);
+
+        assertThat(model.size(), equalTo(4));
+        assertThat(model.getUseCount(), equalTo(6));
+        List<ValuedHistoryRecord> history = model.getHistory(HistoryMode.FREQUENCY, 10, NOW);
+        assertThat(records(history), equalTo(Arrays.asList("a", "b", "c")));
+        assertThat(history.get(0).value, equalTo(3));
+        assertThat(model.getPreviousResultsForQuery("s", 10).get(0).value, equalTo(3));
+
+        model.remove("a");
+        assertThat(model.getUseCount(), equalTo(3));
+        model.removeOlderThan(NOW);
+        assertThat(model.getUseCount(), equalTo(2));
+    }
+
+    @Test
+    public void testFrecencyWindowCountsUsesOfRolledUpEntries() {
+        add("c", NOW - 10 * HOUR);
+        nextId += 49;
+        model.add(nextId++, "", "a", 50, NOW - 9 * HOUR, NOW - 5 * HOUR);
+        for (int i = 0; i < 20; i += 1) {
+            add("b", NOW - HOUR);
+        }
+
+        // window of 60 uses: 20 uses of b, then only the last 40 uses of a, and none of c
+        List<ValuedHistoryRecord> history = model.getHistory(HistoryMode.FRECENCY, 2, NOW);
+        assertThat(records(history), equalTo(Arrays.asList("b", "a")));
+        assertThat(history.get(0).value, equalTo(20));
+        assertThat(history.get(1).value, equalTo(40));
+        assertThat(records(HistoryMode.FRECENCY, 10), equalTo(Arrays.asList("b", "a", "c")));
+    }
+
+    @Test
+    public void testRemove() {
+        add("a", NOW);
+        add("b", NOW);
+        add("a", NOW);
+
+        model.remove("a");
+
+        assertThat(model.size(), equalTo(1));
+        assertThat(records(HistoryMode.RECENCY, 10), equalTo(Arrays.asList("b")));
+    }
+
+    @Test
+    public void testRemoveOlderThan() {
+        add("a", NOW - 10 * HOUR);
+        add("b", NOW - 9 * HOUR);
+        add("a", NOW - 8 * HOUR);
+        add("b", NOW - 7 * HOUR);
+
+        model.removeOlderThan(NOW - 9 * HOUR);
+
+        assertThat(model.size(), equalTo(3));
+        List<ValuedHistoryRecord> history = model.getHistory(HistoryMode.FREQUENCY, 10, NOW);
+        assertThat(records(history), equalTo(Arrays.asList("b", "a")));
+        assertThat(history.get(1).value, equalTo(1));
+    }
+
+    @Test
+    public void testClear() {
+        add("a", NOW);
+        model.clear();
+
+        assertThat(model.size(), equalTo(0));
+        assertThat(model.getHistory(HistoryMode.RECENCY, 10, NOW), empty());
+    }
+
+    private void add(String record, long timeStamp) {
+        model.add(nextId, "", record, timeStamp);
+        nextId += 1;
+    }
+
+    private void add(String query, String record) {
+        model.add(nextId, query, record, NOW);
+        nextId += 1;
+    }
+
+    private List<String> records(HistoryMode historyMode, int limit) {
+        return records(model.getHistory(historyMode, limit, NOW));
+    }
+
+    private static List<String> records(List<ValuedHistoryRecord> history) {
+        List<String> records = new ArrayList<>(history.size());
+        for (ValuedHistoryRecord record : history) {
+            records.add(record.record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,80 @@
+package fr.neamar.kiss.icons;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+class IconPackIndexTest {
+    private IconPackIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new IconPackIndex(42, 1_600_000_000_000L);
+        index.scaleFactor = 0.8f;
+        index.maskImage = "iconmask";
+        index.backImages.add("iconback1");
+        index.backImages.add("iconback2");
+        index.addDrawable("calculator", "ComponentInfo{com.example.calculator/com.example.calculator.Main}");
+        index.addDrawable("calculator", "ComponentInfo{com.example.calc/com.example.calc.Main}");
+        index.addDrawable("camera", "ComponentInfo{com.example.camera/com.example.camera.Main}");
+        index.addDrawable("camera_alt", "ComponentInfo{com.example.camera/com.example.camera.Main}");
+        index.addDrawable("wallpaper", null);
+        index.addCalendar("calendar_", "ComponentInfo{com.example.calendar/com.example.calendar.Main}");
+        index.addDrawable("calendar", "ComponentInfo{com.example.calendar/com.example.calendar.Main}");
+    }
+
+    @Test
+    public void testReadWrittenIndex() throws IOException {
+        IconPackIndex read = IconPackIndex.read(toInput(index), 42, 1_600_000_000_000L);
+
+        assertThat(read, is(notNullValue()));
+        assertThat(read.scaleFactor, is(0.8f));
+        assertThat(read.maskImage, is("iconmask"));
+        assertThat(read.frontImage, is(nullValue()));
+        assertThat(read.backImages, contains("iconback1", "iconback2"));
+        assertThat(read.drawables, containsInAnyOrder("calculator", "camera", "camera_alt", "wallpaper", "calendar"));
+        assertThat(read.drawablesByComponent.get("ComponentInfo{com.example.calc/com.example.calc.Main}"), contains("calculator"));
+        assertThat(read.drawablesByComponent.get("ComponentInfo{com.example.camera/com.example.camera.Main}"), contains("camera", "camera_alt"));
+        assertThat(read.drawablesByComponent.get("ComponentInfo{com.example.calendar/com.example.calendar.Main}"), contains("calendar"));
+        assertThat(read.calendarPrefixesByComponent.get("ComponentInfo{com.example.calendar/com.example.calendar.Main}"), contains("calendar_"));
+        assertThat(read.drawablesByComponent.size(), is(4));
+        assertThat(read.calendarPrefixesByComponent.size(), is(1));
+    }
+
+    @Test
+    public void testIndexOfOtherVersionIsNotRead() throws IOException {
+        assertThat(IconPackIndex.read(toInput(index), 43, 1_600_000_000_000L), is(nullValue()));
+        assertThat(IconPackIndex.read(toInput(index), 42, 1_600_000_000_001L), is(nullValue()));
+    }
+
+    @Test
+    public void testEmptyIndex() throws IOException {
+        IconPackIndex read = IconPackIndex.read(toInput(new IconPackIndex(1, 2)), 1, 2);
+
+        assertThat(read, is(notNullValue()));
+        assertThat(read.scaleFactor, is(1.0f));
+        assertThat(read.maskImage, is(nullValue()));
+        assertThat(read.drawables.isEmpty(), is(true));
+        assertThat(read.drawablesByComponent.isEmpty(), is(true));
+    }
+
+    private static DataInputStream toInput(IconPackIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            index.write(out);
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
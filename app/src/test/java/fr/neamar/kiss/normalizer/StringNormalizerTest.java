@@ -0,0 +1,32 @@
+package fr.neamar.kiss.normalizer;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class StringNormalizerTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "Spotify", "Ⅱ-Café", "ﾐｭｰｼﾞｯｸ", "Zoë Ōsaka"})
+    public void testWriteAndReadResult(String input) throws IOException {
+        StringNormalizer.Result result = StringNormalizer.normalizeWithResult(input, false);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        result.writeTo(new DataOutputStream(bytes));
+        StringNormalizer.Result restored = StringNormalizer.Result.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(restored, equalTo(result));
+        assertThat(restored.toString(), equalTo(result.toString()));
+        for (int i = 0; i <= result.length(); i += 1) {
+            assertThat(restored.mapPosition(i), equalTo(result.mapPosition(i)));
+        }
+    }
+}
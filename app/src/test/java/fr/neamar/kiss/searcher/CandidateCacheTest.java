@@ -0,0 +1,101 @@
+package fr.neamar.kiss.searcher;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import fr.neamar.kiss.dataprovider.IProvider;
+import fr.neamar.kiss.pojo.Pojo;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.sameInstance;
+
+class CandidateCacheTest {
+    private CandidateCache cache;
+    private TestProvider provider;
+    private List<TestPojo> pojos;
+    private List<TestPojo> matches;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new CandidateCache();
+        provider = new TestProvider();
+        pojos = Collections.unmodifiableList(Arrays.asList(new TestPojo("a"), new TestPojo("b"), new TestPojo("c")));
+        matches = new ArrayList<>(pojos.subList(0, 1));
+        cache.setMatches(provider, pojos, codePoints("sp"), 0, matches);
+    }
+
+    @Test
+    public void testRefinedQueryReusesMatches() {
+        assertThat(cache.getCandidates(provider, pojos, codePoints("spo"), 0), sameInstance(matches));
+        assertThat(cache.getCandidates(provider, pojos, codePoints("SPO"), 0), sameInstance(matches));
+        assertThat(cache.getCandidates(provider, pojos, codePoints("sp"), 0), sameInstance(matches));
+    }
+
+    @Test
+    public void testOtherQueryScoresEverything() {
+        assertThat(cache.getCandidates(provider, pojos, codePoints("s"), 0), sameInstance(pojos));
+        assertThat(cache.getCandidates(provider, pojos, codePoints("so"), 0), sameInstance(pojos));
+    }
+
+    @Test
+    public void testChangedScopeScoresEverything() {
+        assertThat(cache.getCandidates(provider, pojos, codePoints("spo"), 1), sameInstance(pojos));
+    }
+
+    @Test
+    public void testReloadedProviderScoresEverything() {
+        List<TestPojo> reloaded = Collections.unmodifiableList(new ArrayList<>(pojos));
+        assertThat(cache.getCandidates(provider, reloaded, codePoints("spo"), 0), sameInstance(reloaded));
+    }
+
+    @Test
+    public void testClear() {
+        cache.clear();
+        assertThat(cache.getCandidates(provider, pojos, codePoints("spo"), 0), sameInstance(pojos));
+    }
+
+    private static int[] codePoints(String s) {
+        return s.codePoints().toArray();
+    }
+
+    private static class TestPojo extends Pojo {
+        TestPojo(String id) {
+            super(id);
+        }
+    }
+
+    private static class TestProvider implements IProvider<TestPojo> {
+        @Override
+        public void requestResults(String s, Searcher searcher) {
+        }
+
+        @Override
+        public void reload() {
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return true;
+        }
+
+        @Override
+        public boolean mayFindById(String id) {
+            return false;
+        }
+
+        @Override
+        public TestPojo findById(String id) {
+            return null;
+        }
+
+        @Override
+        public List<TestPojo> getPojos() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package fr.neamar.kiss.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+class BoundedPriorityQueueTest {
+
+    @Test
+    public void testKeepsGreatestElementsInOrder() {
+        Random random = new Random(42);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 1) {
+            values.add(random.nextInt(500));
+        }
+
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<>(50, Comparator.naturalOrder());
+        for (Integer value : values) {
+            queue.offer(value);
+        }
+
+        List<Integer> expected = new ArrayList<>(values);
+        Collections.sort(expected);
+        expected = expected.subList(expected.size() - 50, expected.size());
+
+        assertThat(queue.size(), equalTo(50));
+        assertThat(drain(queue), equalTo(expected));
+        assertThat(queue.poll(), nullValue());
+    }
+
+    @Test
+    public void testRejectsElementsNotGreaterThanSmallest() {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<>(2, Comparator.naturalOrder());
+        assertThat(queue.offer(5), equalTo(true));
+        assertThat(queue.offer(7), equalTo(true));
+        assertThat(queue.offer(3), equalTo(false));
+        assertThat(queue.offer(5), equalTo(false));
+        assertThat(queue.offer(6), equalTo(true));
+        assertThat(drain(queue), equalTo(Arrays.asList(6, 7)));
+    }
+
+    @Test
+    public void testUnboundedCapacity() {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<>(Integer.MAX_VALUE, Comparator.reverseOrder());
+        for (int i = 0; i < 100; i += 1) {
+            assertThat(queue.offer(i), equalTo(true));
+        }
+        assertThat(queue.size(), equalTo(100));
+        assertThat(queue.peek(), equalTo(99));
+    }
+
+    @Test
+    public void testZeroCapacity() {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<>(0, Comparator.naturalOrder());
+        assertThat(queue.offer(1), equalTo(false));
+        assertThat(queue.isEmpty(), equalTo(true));
+    }
+
+    private static List<Integer> drain(BoundedPriorityQueue<Integer> queue) {
+        List<Integer> result = new ArrayList<>();
+        while (queue.peek() != null) {
+            result.add(queue.poll());
+        }
+        return result;
+    }
+}
@@ -5,6 +5,9 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import java.util.stream.Stream;
 
 import fr.neamar.kiss.normalizer.StringNormalizer;
@@ -53,7 +56,11 @@ class FuzzyScoreTest {
     }
 
     private FuzzyScore createFuzzyScore(int[] query) {
-        return new FuzzyScore(query, false)
+        return createFuzzyScore(query, false);
+    }
+
+    private FuzzyScore createFuzzyScore(int[] query, boolean detailedMatchIndices) {
+        return new FuzzyScore(query, detailedMatchIndices)
                 .setFullWordBonus(full_word_bonus)
                 .setAdjacencyBonus(adjacency_bonus)
                 .setSeparatorBonus(separator_bonus)
@@ -62,6 +69,71 @@ class FuzzyScoreTest {
                 .setMaxLeadingLetterPenalty(max_leading_letter_penalty)
                 .setUnmatchedLetterPenalty(unmatched_letter_penalty);
     }
+
+    @ParameterizedTest
+    @MethodSource("parityProvider")
+    public void testParityWithReference(String query, String testString) {
+        int[] queryCodePoints = StringNormalizer.normalizeWithResult(query, false).codePoints;
+        int[] testCodePoints = StringNormalizer.normalizeWithResult(testString, false).codePoints;
+
+        ReferenceFuzzyScore reference = new ReferenceFuzzyScore(queryCodePoints);
+        FuzzyScore fuzzyScore = createFuzzyScore(queryCodePoints, true);
+
+        FuzzyScore.MatchInfo matchInfo = fuzzyScore.match(testCodePoints);
+        assertThat(matchInfo.score, equalTo(reference.match(testCodePoints)));
+        assertThat(matchInfo.match, equalTo(reference.match));
+        assertThat(matchedIndices(matchInfo), equalTo(reference.matchedIndices));
+
+        // same result when matching on a CharSequence, which uses the reusable codepoint buffer
+        // (filled with a longer text first)
+        fuzzyScore.match(testString + testString);
+        matchInfo = fuzzyScore.match(new String(testCodePoints, 0, testCodePoints.length));
+        assertThat(matchInfo.score, equalTo(reference.match(testCodePoints)));
+        assertThat(matchInfo.match, equalTo(reference.match));
+        assertThat(matchedIndices(matchInfo), equalTo(reference.matchedIndices));
+    }
+
+    @SuppressWarnings("unused")
+    private static Stream<Arguments> parityProvider() {
+        List<Arguments> arguments = new ArrayList<>();
+        String[] texts = {
+                "", " ", "a", "aa", "aaaa", "YouTube", "youtube", "John Smith", "Jo Smith-Jones",
+                "Power of the Wild", "Druid of the Claw", "Frostwolf Grunt", "camelCaseWords",
+                "  leading spaces", "trailing spaces  ", "Élodie Dupré", "Ⅱ ﾐ straße",
+                "\uD83D\uDE00 emoji \uD83D\uDE00", "0612345678", "+33 6 12 34 56 78"
+        };
+        String[] queries = {"a", "aa", "aaa", "yt", "js", "jsmith", "otw", "ow", "cc", "el", "e", "ss", "06", "\uD83D\uDE00", "x"};
+        for (String query : queries) {
+            for (String text : texts) {
+                arguments.add(Arguments.of(query, text));
+            }
+        }
+
+        // random strings from a small alphabet to get lots of repeats, rematches and separators
+        Random random = new Random(42);
+        String alphabet = "aAbBcC  dé";
+        for (int i = 0; i < 500; i += 1) {
+            arguments.add(Arguments.of(randomString(random, alphabet, 1 + random.nextInt(4)), randomString(random, alphabet, random.nextInt(20))));
+        }
+        return arguments.stream();
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i += 1) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    private static List<Integer> matchedIndices(FuzzyScore.MatchInfo matchInfo) {
+        List<Integer> indices = new ArrayList<>(matchInfo.matchedIndices.size());
+        for (int i = 0; i < matchInfo.matchedIndices.size(); i += 1) {
+            indices.add(matchInfo.matchedIndices.get(i));
+        }
+        return indices;
+    }
+
     @Test
     public void testReusedMatchInfoScore() {
         StringNormalizer.Result queryNormalized = StringNormalizer.normalizeWithResult("Bob", false);
@@ -83,4 +155,137 @@ class FuzzyScoreTest {
         FuzzyScore.MatchInfo match2  = fuzzyScore.match(testStringNormalized2.codePoints);
         assertThat(match2.score, equalTo(unmatched_letter_penalty * 5));
     }
+
+    /**
+     * Boxed implementation of the algorithm as it was before the primitive rewrite of {@link FuzzyScore},
+     * used as reference to check that scores and matched indices did not change.
+     */
+    private static class ReferenceFuzzyScore {
+        private final int patternLength;
+        private final int[] patternChar;
+        private final int[] patternLower;
+        private final List<Integer> matchedIndices = new ArrayList<>();
+        private boolean match;
+
+        ReferenceFuzzyScore(int[] pattern) {
+            patternLength = pattern.length;
+            patternChar = new int[patternLength];
+            patternLower = new int[patternLength];
+            for (int i = 0; i < patternLower.length; i += 1) {
+                patternChar[i] = pattern[i];
+                patternLower[i] = Character.toLowerCase(pattern[i]);
+            }
+        }
+
+        int match(int[] text) {
+            int score = 0;
+            int patternIdx = 0;
+            int strIdx = 0;
+            int strLength = text.length;
+            boolean fullWord = false;
+            boolean prevMatched = false;
+            boolean prevLower = false;
+            boolean prevSeparator = true;
+
+            Integer bestLetter = null;
+            Integer bestLower = null;
+            Integer bestLetterIdx = null;
+            int bestLetterScore = 0;
+
+            matchedIndices.clear();
+
+            while (strIdx != strLength) {
+                Integer patternChar = null;
+                Integer patternLower = null;
+                if (patternIdx != patternLength) {
+                    patternChar = this.patternChar[patternIdx];
+                    patternLower = this.patternLower[patternIdx];
+                }
+                int strChar = text[strIdx];
+                int strLower = Character.toLowerCase(strChar);
+                int strUpper = Character.toUpperCase(strChar);
+                boolean isWhitespace = Character.isWhitespace(strChar);
+
+                boolean nextMatch = patternChar != null && patternLower == strLower;
+                boolean rematch = bestLetter != null && bestLower == strLower;
+
+                boolean advanced = nextMatch && bestLetter != null;
+                boolean patternRepeat = bestLetter != null && patternChar != null && patternLower.equals(bestLower);
+                if (advanced || patternRepeat) {
+                    score += bestLetterScore;
+                    matchedIndices.add(bestLetterIdx);
+                    bestLetter = null;
+                    bestLower = null;
+                    bestLetterIdx = null;
+                    bestLetterScore = 0;
+                }
+
+                if (isWhitespace && fullWord) {
+                    score += full_word_bonus;
+                }
+
+                if (nextMatch || rematch) {
+                    int newScore = 0;
+
+                    if (patternIdx == 0) {
+                        int penalty = Math.max(strIdx * leading_letter_penalty, max_leading_letter_penalty);
+                        score += penalty;
+                    }
+
+                    if (prevMatched && !rematch) {
+                        newScore += adjacency_bonus;
+                    }
+
+                    if (prevSeparator) {
+                        newScore += separator_bonus;
+                    }
+
+                    if (prevLower && strChar == strUpper && strLower != strUpper) {
+                        newScore += camel_bonus;
+                    }
+
+                    if (nextMatch) {
+                        ++patternIdx;
+                    }
+
+                    if (newScore >= bestLetterScore) {
+                        if (bestLetter != null) {
+                            score += unmatched_letter_penalty;
+                        }
+
+                        bestLetter = strChar;
+                        bestLower = strLower;
+                        bestLetterIdx = strIdx;
+                        bestLetterScore = newScore;
+
+                        if (prevSeparator) {
+                            fullWord = true;
+                        }
+                    }
+
+                    prevMatched = true;
+                } else {
+                    score += unmatched_letter_penalty;
+                    prevMatched = false;
+                    fullWord = false;
+                }
+
+                prevLower = strChar == strLower && strLower != strUpper;
+                prevSeparator = isWhitespace;
+
+                ++strIdx;
+            }
+
+            if (bestLetter != null) {
+                score += bestLetterScore;
+                matchedIndices.add(bestLetterIdx);
+            }
+            if (fullWord) {
+                score += full_word_bonus;
+            }
+
+            match = patternIdx == patternLength;
+            return score;
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package fr.neamar.kiss.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import fr.neamar.kiss.pojo.SyntheticAppPojo;
+import fr.neamar.kiss.pojo.SyntheticContactsPojo;
+
+/**
+ * Deterministic generator of app and contact names, so that runs can be compared with each other.
+ */
+final class Corpus {
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ne", "spo", "ti", "fy", "ra", "zu", "be", "do", "gle", "max", "o", "pi",
+            "sa", "chr", "ome", "we", "at", "her", "ma", "ps", "an", "é", "lè", "ü", "ñ", "sto", "re"
+    };
+    private static final String[] TAGS = {"", "", "", "work", "games", "social", "music", "travel news"};
+
+    private Corpus() {
+    }
+
+    static List<String> names(int size) {
+        Random random = new Random(size);
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i += 1) {
+            names.add(name(random) + " " + name(random));
+        }
+        return names;
+    }
+
+    static List<SyntheticAppPojo> apps(int size) {
+        Random random = new Random(size);
+        List<SyntheticAppPojo> apps = new ArrayList<>(size);
+        for (int i = 0; i < size; i += 1) {
+            String name = random.nextInt(3) == 0 ? name(random) + " " + name(random) : name(random);
+            apps.add(new SyntheticAppPojo("app://com.example." + i + "/.Main", name, TAGS[random.nextInt(TAGS.length)]));
+        }
+        return apps;
+    }
+
+    static List<SyntheticContactsPojo> contacts(int size) {
+        Random random = new Random(size);
+        List<SyntheticContactsPojo> contacts = new ArrayList<>(size);
+        for (int i = 0; i < size; i += 1) {
+            String firstName = name(random);
+            String lastName = name(random);
+            String nickname = random.nextInt(10) == 0 ? name(random) : null;
+            String phone = String.format(Locale.ROOT, "+33 6 %02d %02d %02d %02d", random.nextInt(100), random.nextInt(100), random.nextInt(100), random.nextInt(100));
+            contacts.add(new SyntheticContactsPojo("contact://" + i, firstName + " " + lastName, lastName + ", " + firstName, nickname, phone, random.nextInt(20) == 0));
+        }
+        return contacts;
+    }
+
+    private static String name(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int syllables = 1 + random.nextInt(3);
+        for (int i = 0; i < syllables; i += 1) {
+            sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package fr.neamar.kiss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+import fr.neamar.kiss.normalizer.StringNormalizer;
+import fr.neamar.kiss.utils.FuzzyScore;
+
+/**
+ * Scoring of names against a query, done for every searchable field of every pojo on every keystroke.
+ */
+@State(Scope.Benchmark)
+public class FuzzyScoreBenchmark {
+    @Param({"1000"})
+    public int size;
+
+    @Param({"s", "spo", "jsmith"})
+    public String query;
+
+    private List<String> names;
+    private int[][] normalizedNames;
+    private FuzzyScore fuzzyScore;
+
+    @Setup
+    public void setUp() {
+        names = Corpus.names(size);
+        normalizedNames = new int[size][];
+        for (int i = 0; i < size; i += 1) {
+            normalizedNames[i] = StringNormalizer.normalizeWithResult(names.get(i), false).codePoints;
+        }
+        fuzzyScore = new FuzzyScore(StringNormalizer.normalizeWithResult(query, false).codePoints);
+    }
+
+    @Benchmark
+    public void matchCodePoints(Blackhole blackhole) {
+        for (int[] name : normalizedNames) {
+            blackhole.consume(fuzzyScore.match(name).score);
+        }
+    }
+
+    @Benchmark
+    public void matchCharSequence(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(fuzzyScore.match(name).score);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package fr.neamar.kiss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Queries on the history table of a synthetic history, without indexes and SQL of DB version 8,
+ * and with the indexes and SQL of DB version 9 (see DB.addHistoryIndexes and DBHelper).
+ * Since DB version 10 previous results for a query are computed in memory, see
+ * {@link fr.neamar.kiss.db.HistoryModelBenchmark}.
+ * <p>
+ * SQLite is used through JDBC here, the SQL is the same as the one used by the app.
+ */
+@State(Scope.Benchmark)
+public class HistoryQueryBenchmark {
+    private static final String MAX_CHARACTER = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"v8", "v9"})
+    public String schema;
+
+    @Param({"s", "spo"})
+    public String query;
+
+    private Connection connection;
+    private PreparedStatement previousResultsForQuery;
+    private PreparedStatement countForRecord;
+    private PreparedStatement countOlderThan;
+    private String record;
+    private long timeStamp;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE history ( _id INTEGER PRIMARY KEY AUTOINCREMENT, \"query\" TEXT, record TEXT NOT NULL, timeStamp INTEGER DEFAULT 0  NOT NULL)");
+        }
+        fill();
+        if ("v9".equals(schema)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_history_query ON history(\"query\" COLLATE NOCASE, record);");
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_history_record ON history(record, timeStamp);");
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_history_timestamp ON history(timeStamp);");
+            }
+            previousResultsForQuery = connection.prepareStatement("SELECT record, COUNT(*) AS count FROM history" +
+                    " WHERE \"query\" COLLATE NOCASE >= ? AND \"query\" COLLATE NOCASE < ?" +
+                    " GROUP BY record ORDER BY COUNT(*) DESC LIMIT 10");
+        } else {
+            previousResultsForQuery = connection.prepareStatement("SELECT record, COUNT(*) AS count FROM history" +
+                    " WHERE query LIKE ?" +
+                    " GROUP BY record ORDER BY COUNT(*) DESC LIMIT 10");
+        }
+        // same filters as removeFromHistory and the clean up of old history
+        countForRecord = connection.prepareStatement("SELECT COUNT(*) FROM history WHERE record = ?");
+        countOlderThan = connection.prepareStatement("SELECT COUNT(*) FROM history WHERE timeStamp < ?");
+    }
+
+    /**
+     * Every launch stores the query typed so far (a prefix of the name of the launched app) and the app launched
+     */
+    private void fill() throws SQLException {
+        List<String> names = Corpus.names(500);
+        Random random = new Random(size);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO history(\"query\", record, timeStamp) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < size; i += 1) {
+                // popular apps are launched more often
+                int app = (int) (names.size() * Math.pow(random.nextDouble(), 3));
+                String name = names.get(app).toLowerCase(Locale.ROOT);
+                insert.setString(1, name.substring(0, Math.min(name.length(), 1 + random.nextInt(4))));
+                insert.setString(2, "app://com.example." + app + "/.Main");
+                insert.setLong(3, 1_600_000_000_000L + i * 60_000L);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        record = "app://com.example.42/.Main";
+        timeStamp = 1_600_000_000_000L + size * 6_000L;
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void previousResultsForQuery(Blackhole blackhole) throws SQLException {
+        if ("v9".equals(schema)) {
+            previousResultsForQuery.setString(1, query);
+            previousResultsForQuery.setString(2, query + MAX_CHARACTER);
+        } else {
+            previousResultsForQuery.setString(1, query + "%");
+        }
+        try (ResultSet resultSet = previousResultsForQuery.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getString(1));
+                blackhole.consume(resultSet.getInt(2));
+            }
+        }
+    }
+
+    @Benchmark
+    public int findRecord() throws SQLException {
+        countForRecord.setString(1, record);
+        try (ResultSet resultSet = countForRecord.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    @Benchmark
+    public int findOlderThan() throws SQLException {
+        countOlderThan.setLong(1, timeStamp);
+        try (ResultSet resultSet = countOlderThan.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+}
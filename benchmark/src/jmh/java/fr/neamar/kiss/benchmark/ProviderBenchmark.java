@@ -0,0 +1,98 @@
+package fr.neamar.kiss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.neamar.kiss.normalizer.StringNormalizer;
+import fr.neamar.kiss.pojo.ScoredPojo;
+import fr.neamar.kiss.pojo.SyntheticAppPojo;
+import fr.neamar.kiss.pojo.SyntheticContactsPojo;
+import fr.neamar.kiss.utils.FuzzyScore;
+
+/**
+ * Scoring loops of the providers for one keystroke.
+ * <p>
+ * Providers are Android services and can't be created outside of a device, so these loops mirror
+ * {@code AppProvider.requestResults} and {@code ContactsProvider.requestResults}: keep them in sync.
+ */
+@State(Scope.Benchmark)
+public class ProviderBenchmark {
+    @Param({"100", "1000", "10000", "50000"})
+    public int size;
+
+    @Param({"s", "spo", "+336"})
+    public String query;
+
+    private List<SyntheticAppPojo> apps;
+    private List<SyntheticContactsPojo> contacts;
+
+    @Setup
+    public void setUp() {
+        apps = Corpus.apps(size);
+        contacts = Corpus.contacts(size);
+    }
+
+    @Benchmark
+    public List<ScoredPojo> appProvider() {
+        List<ScoredPojo> results = new ArrayList<>();
+        StringNormalizer.Result queryNormalized = StringNormalizer.normalizeWithResult(query, false);
+        FuzzyScore fuzzyScore = new FuzzyScore(queryNormalized.codePoints);
+
+        for (SyntheticAppPojo pojo : apps) {
+            FuzzyScore.MatchInfo matchInfo = fuzzyScore.match(pojo.normalizedName.codePoints);
+            int relevance = ScoredPojo.getMatchingRelevance(matchInfo, ScoredPojo.NO_MATCH);
+
+            // check relevance for tags
+            if (pojo.getNormalizedTags() != null) {
+                matchInfo = fuzzyScore.match(pojo.getNormalizedTags().codePoints);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
+            }
+
+            if (relevance != ScoredPojo.NO_MATCH) {
+                results.add(new ScoredPojo(pojo, relevance));
+            }
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<ScoredPojo> contactsProvider() {
+        List<ScoredPojo> results = new ArrayList<>();
+        StringNormalizer.Result queryNormalized = StringNormalizer.normalizeWithResult(query, false);
+        FuzzyScore fuzzyScore = new FuzzyScore(queryNormalized.codePoints);
+        boolean searchIdentifiers = queryNormalized.length() > 2;
+
+        for (SyntheticContactsPojo pojo : contacts) {
+            FuzzyScore.MatchInfo matchInfo = fuzzyScore.match(pojo.normalizedName.codePoints);
+            int relevance = ScoredPojo.getMatchingRelevance(matchInfo, ScoredPojo.NO_MATCH);
+
+            matchInfo = fuzzyScore.match(pojo.normalizedNameAlternative.codePoints);
+            relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
+
+            if (pojo.normalizedNickname != null) {
+                matchInfo = fuzzyScore.match(pojo.normalizedNickname.codePoints);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
+            }
+
+            if (relevance == ScoredPojo.NO_MATCH && searchIdentifiers) {
+                // search for the phone number
+                matchInfo = fuzzyScore.match(pojo.normalizedPhone.codePoints);
+                relevance = ScoredPojo.getMatchingRelevance(matchInfo, relevance);
+            }
+
+            if (relevance != ScoredPojo.NO_MATCH) {
+                if (pojo.starred) {
+                    relevance += 40;
+                }
+                results.add(new ScoredPojo(pojo, relevance));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,75 @@
+package fr.neamar.kiss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import fr.neamar.kiss.pojo.RelevanceComparator;
+import fr.neamar.kiss.pojo.ScoredPojo;
+import fr.neamar.kiss.pojo.SyntheticAppPojo;
+import fr.neamar.kiss.utils.BoundedPriorityQueue;
+
+/**
+ * Selection of the best results, as done by {@code Searcher.addResults} and {@code Searcher.onPostExecute}.
+ */
+@State(Scope.Benchmark)
+public class SearcherBenchmark {
+    private static final int MAX_RESULTS = 50;
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int size;
+
+    private List<ScoredPojo> matches;
+
+    @Setup
+    public void setUp() {
+        List<SyntheticAppPojo> apps = Corpus.apps(size);
+        Random random = new Random(size);
+        matches = new ArrayList<>(apps.size());
+        for (SyntheticAppPojo pojo : apps) {
+            matches.add(new ScoredPojo(pojo, random.nextInt(200) - 50));
+        }
+    }
+
+    @Benchmark
+    public List<ScoredPojo> boundedPriorityQueue() {
+        BoundedPriorityQueue<ScoredPojo> queue = new BoundedPriorityQueue<>(MAX_RESULTS, new RelevanceComparator());
+        // providers add their results one by one
+        for (ScoredPojo pojo : matches) {
+            queue.offer(pojo);
+        }
+
+        List<ScoredPojo> results = new ArrayList<>(queue.size());
+        while (queue.peek() != null) {
+            results.add(queue.poll());
+        }
+        return results;
+    }
+
+    /**
+     * Unbounded queue as used before {@link BoundedPriorityQueue}, kept for comparison
+     */
+    @Benchmark
+    public List<ScoredPojo> priorityQueue() {
+        PriorityQueue<ScoredPojo> queue = new PriorityQueue<>(MAX_RESULTS, new RelevanceComparator());
+        // providers add their results one by one
+        for (ScoredPojo pojo : matches) {
+            queue.add(pojo);
+        }
+
+        while (queue.size() > MAX_RESULTS)
+            queue.poll();
+        List<ScoredPojo> results = new ArrayList<>(queue.size());
+        while (queue.peek() != null) {
+            results.add(queue.poll());
+        }
+        return results;
+    }
+}
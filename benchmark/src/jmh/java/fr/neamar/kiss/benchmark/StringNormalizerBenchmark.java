@@ -0,0 +1,40 @@
+package fr.neamar.kiss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+import fr.neamar.kiss.normalizer.StringNormalizer;
+
+/**
+ * Normalization of names, done for every pojo on load and for the query on every keystroke.
+ */
+@State(Scope.Benchmark)
+public class StringNormalizerBenchmark {
+    @Param({"1000"})
+    public int size;
+
+    private List<String> names;
+
+    @Setup
+    public void setUp() {
+        names = Corpus.names(size);
+    }
+
+    @Benchmark
+    public void normalizeWithResult(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(StringNormalizer.normalizeWithResult(name, false));
+        }
+    }
+
+    @Benchmark
+    public StringNormalizer.Result normalizeQuery() {
+        return StringNormalizer.normalizeWithResult("spot", false);
+    }
+}
@@ -0,0 +1,72 @@
+package fr.neamar.kiss.db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In-memory history lookups, same synthetic history as {@link fr.neamar.kiss.benchmark.HistoryQueryBenchmark}.
+ * In package fr.neamar.kiss.db as {@link HistoryModel} is package private.
+ */
+@State(Scope.Benchmark)
+public class HistoryModelBenchmark {
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "spo", "ti", "fy", "ra", "zu", "be", "do", "gle"};
+    private static final long START = 1_600_000_000_000L;
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"s", "spo"})
+    public String query;
+
+    private HistoryModel model;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(size);
+        String[] names = new String[500];
+        for (int i = 0; i < names.length; i += 1) {
+            StringBuilder sb = new StringBuilder();
+            int syllables = 1 + random.nextInt(3);
+            for (int j = 0; j < syllables; j += 1) {
+                sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            names[i] = sb.toString();
+        }
+
+        model = new HistoryModel();
+        for (int i = 0; i < size; i += 1) {
+            // popular apps are launched more often
+            int app = (int) (names.length * Math.pow(random.nextDouble(), 3));
+            String name = names[app];
+            model.add(i + 1, name.substring(0, Math.min(name.length(), 1 + random.nextInt(4))), "app://com.example." + app + "/.Main", START + i * 60_000L);
+        }
+        now = START + size * 60_000L;
+    }
+
+    @Benchmark
+    public List<ValuedHistoryRecord> previousResultsForQuery() {
+        return model.getPreviousResultsForQuery(query, 10);
+    }
+
+    @Benchmark
+    public List<ValuedHistoryRecord> frecency() {
+        return model.getHistory(HistoryMode.FRECENCY, 50, now);
+    }
+
+    @Benchmark
+    public List<ValuedHistoryRecord> time() {
+        return model.getHistory(HistoryMode.TIME, 50, now);
+    }
+
+    @Benchmark
+    public List<ValuedHistoryRecord> adaptive() {
+        return model.getHistory(HistoryMode.ADAPTIVE, 50, now);
+    }
+}
@@ -0,0 +1,13 @@
+package fr.neamar.kiss.pojo;
+
+/**
+ * Stand-in for {@link AppPojo}, which can't be created outside of a device.
+ * Holds the same searchable data: name and tags.
+ */
+public final class SyntheticAppPojo extends PojoWithTags {
+    public SyntheticAppPojo(String id, String name, String tags) {
+        super(id);
+        setName(name);
+        setTags(tags);
+    }
+}
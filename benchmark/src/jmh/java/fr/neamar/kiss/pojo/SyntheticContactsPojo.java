@@ -0,0 +1,24 @@
+package fr.neamar.kiss.pojo;
+
+import fr.neamar.kiss.normalizer.PhoneNormalizer;
+import fr.neamar.kiss.normalizer.StringNormalizer;
+
+/**
+ * Stand-in for {@link ContactsPojo}, which can't be created outside of a device.
+ * Holds the same searchable data: name, alternative name, nickname and phone number.
+ */
+public final class SyntheticContactsPojo extends Pojo {
+    public final StringNormalizer.Result normalizedNameAlternative;
+    public final StringNormalizer.Result normalizedNickname;
+    public final StringNormalizer.Result normalizedPhone;
+    public final boolean starred;
+
+    public SyntheticContactsPojo(String id, String name, String nameAlternative, String nickname, String phone, boolean starred) {
+        super(id);
+        setName(name);
+        this.normalizedNameAlternative = StringNormalizer.normalizeWithResult(nameAlternative, false);
+        this.normalizedNickname = nickname == null ? null : StringNormalizer.normalizeWithResult(nickname, false);
+        this.normalizedPhone = PhoneNormalizer.simplifyPhoneNumber(phone);
+        this.starred = starred;
+    }
+}
@@ -0,0 +1,15 @@
+package android.util;
+
+/**
+ * Minimal replacement for the Android class of the same name, so that
+ * {@link fr.neamar.kiss.utils.FuzzyScore} can be used outside of a device.
+ */
+public class Pair<F, S> {
+    public final F first;
+    public final S second;
+
+    public Pair(F first, S second) {
+        this.first = first;
+        this.second = second;
+    }
+}